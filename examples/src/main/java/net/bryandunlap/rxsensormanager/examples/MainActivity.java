@@ -27,7 +27,9 @@ import io.reactivex.functions.Function;
 import java.math.RoundingMode;
 import java.text.NumberFormat;
 import java.util.Locale;
+import net.bryandunlap.rxsensormanager.FrameCoalescer;
 import net.bryandunlap.rxsensormanager.RxSensorManager;
+import net.bryandunlap.rxsensormanager.SensorSample;
 
 public class MainActivity extends AppCompatActivity {
     private CompositeDisposable compositeDisposable;
@@ -116,30 +118,27 @@ public class MainActivity extends AppCompatActivity {
                         }
                     }
                 })
-                .switchMap(new Function<Boolean, Observable<SensorEvent>>() {
+                .switchMap(new Function<Boolean, Observable<SensorSample>>() {
                     @Override
-                    public Observable<SensorEvent> apply(Boolean isChecked) {
+                    public Observable<SensorSample> apply(Boolean isChecked) {
                         if (isChecked) {
-                            return rxSensorManager.observeSensor(
-                                    Sensor.TYPE_ACCELEROMETER,
-                                    SensorManager.SENSOR_DELAY_NORMAL
-                            ).toObservable();
+                            return observeAccelerometer();
                         } else {
                             return Observable.empty();
                         }
                     }
                 })
-                .subscribe(new Observer<SensorEvent>() {
+                .subscribe(new Observer<SensorSample>() {
                     @Override
                     public void onSubscribe(Disposable disposable) {
                         compositeDisposable.add(disposable);
                     }
 
                     @Override
-                    public void onNext(SensorEvent event) {
-                        sensorXTextView.setText(formatter.format(event.values[0]));
-                        sensorYTextView.setText(formatter.format(event.values[1]));
-                        sensorZTextView.setText(formatter.format(event.values[2]));
+                    public void onNext(SensorSample sample) {
+                        sensorXTextView.setText(formatter.format(sample.values()[0]));
+                        sensorYTextView.setText(formatter.format(sample.values()[1]));
+                        sensorZTextView.setText(formatter.format(sample.values()[2]));
                     }
 
                     @Override
@@ -154,6 +153,26 @@ public class MainActivity extends AppCompatActivity {
                 });
     }
 
+    private Observable<SensorSample> observeAccelerometer() {
+        // Update the text views at most once per frame rather than once per sensor event.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            return rxSensorManager.observeSensorPerFrame(
+                    Sensor.TYPE_ACCELEROMETER,
+                    SensorManager.SENSOR_DELAY_NORMAL,
+                    FrameCoalescer.LATEST
+            ).toObservable();
+        }
+        return rxSensorManager.observeSensor(
+                Sensor.TYPE_ACCELEROMETER,
+                SensorManager.SENSOR_DELAY_NORMAL
+        ).map(new Function<SensorEvent, SensorSample>() {
+            @Override
+            public SensorSample apply(SensorEvent event) {
+                return SensorSample.copyOf(event);
+            }
+        }).toObservable();
+    }
+
     @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
     private void bindTriggerSwitch() {
                 checkedChanges(triggerSwitch)
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * ChoreographerFrameClock is a {@link FrameClock} backed by the {@link Choreographer} of the thread that creates
+ * it, normally the main thread.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+@TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+public final class ChoreographerFrameClock implements FrameClock {
+    @NonNull
+    private final Choreographer choreographer;
+    @NonNull
+    private final Map<Callback, Choreographer.FrameCallback> frameCallbacks =
+            new IdentityHashMap<Callback, Choreographer.FrameCallback>();
+
+    /**
+     * Public constructor. Must be called on a thread with a {@link android.os.Looper}.
+     *
+     * @since    0.9.0
+     */
+    public ChoreographerFrameClock() {
+        this.choreographer = Choreographer.getInstance();
+    }
+
+    @Override
+    public void postFrameCallback(@NonNull final Callback callback) {
+        choreographer.postFrameCallback(frameCallbackFor(callback));
+    }
+
+    @Override
+    public void removeFrameCallback(@NonNull final Callback callback) {
+        final Choreographer.FrameCallback frameCallback;
+        synchronized (frameCallbacks) {
+            frameCallback = frameCallbacks.remove(callback);
+        }
+        if (frameCallback != null) {
+            choreographer.removeFrameCallback(frameCallback);
+        }
+    }
+
+    @NonNull
+    private Choreographer.FrameCallback frameCallbackFor(@NonNull final Callback callback) {
+        synchronized (frameCallbacks) {
+            Choreographer.FrameCallback frameCallback = frameCallbacks.get(callback);
+            if (frameCallback == null) {
+                frameCallback = new Choreographer.FrameCallback() {
+                    @Override
+                    public void doFrame(long frameTimeNanos) {
+                        callback.doFrame(frameTimeNanos);
+                    }
+                };
+                frameCallbacks.put(callback, frameCallback);
+            }
+            return frameCallback;
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+
+/**
+ * Deadband describes which {@link SensorEvent}s of a slow-changing {@link Sensor} are worth delivering.
+ * <p>
+ * An event is delivered when any value moves further than its axis tolerance from the last delivered value, or
+ * when no event has been delivered for the heartbeat interval. With {@link #ABSOLUTE} tolerances the distance is
+ * measured in the units of the sensor; with {@link #RELATIVE} tolerances it is a fraction of the magnitude of the
+ * last delivered value. Axes beyond the end of the tolerance array use its last element, so a single tolerance
+ * covers every axis.
+ * <p>
+ * Used with {@link RxSensorManager#observeSensor(int, int, int, Deadband)}, suppressed events are discarded inside
+ * the {@link android.hardware.SensorEventListener} and never reach the emitter.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class Deadband {
+    /**
+     * Tolerances are absolute distances in the units of the sensor.
+     *
+     * @since    0.9.0
+     */
+    public static final int ABSOLUTE = 0;
+    /**
+     * Tolerances are fractions of the magnitude of the last delivered value.
+     *
+     * @since    0.9.0
+     */
+    public static final int RELATIVE = 1;
+
+    private static final long NANOS_PER_MICRO = 1000L;
+
+    private final int mode;
+    @NonNull
+    private final float[] tolerances;
+    private final long heartbeatNs;
+
+    /**
+     * Public constructor.
+     *
+     * @param    mode         {@link #ABSOLUTE} or {@link #RELATIVE}
+     * @param    tolerances   the non-negative tolerance of each axis
+     * @param    heartbeatUs  the longest silence in microseconds before an unchanged event is delivered anyway, or 0
+     *                        to deliver changes only
+     * @since    0.9.0
+     */
+    public Deadband(final int mode, @NonNull final float[] tolerances, final int heartbeatUs) {
+        if (mode != ABSOLUTE && mode != RELATIVE) {
+            throw new IllegalArgumentException("Unknown deadband mode: " + mode);
+        }
+        if (tolerances.length == 0) {
+            throw new IllegalArgumentException("tolerances must not be empty");
+        }
+        for (final float tolerance : tolerances) {
+            if (!(tolerance >= 0)) {
+                throw new IllegalArgumentException("tolerances must be non-negative: " + tolerance);
+            }
+        }
+        if (heartbeatUs < 0) {
+            throw new IllegalArgumentException("heartbeatUs must be non-negative: " + heartbeatUs);
+        }
+        this.mode = mode;
+        this.tolerances = tolerances.clone();
+        this.heartbeatNs = heartbeatUs * NANOS_PER_MICRO;
+    }
+
+    @NonNull
+    Gate newGate() {
+        return new Gate();
+    }
+
+    /**
+     * The per-listener state of a {@link Deadband}: the last delivered values and timestamp.
+     */
+    final class Gate {
+        private float[] last = new float[0];
+        private long lastTimestamp;
+        private boolean open = true;
+
+        /**
+         * @return   Whether the event should be delivered. Delivered values become the new reference.
+         */
+        boolean test(final long timestamp, @NonNull final float[] values) {
+            if (open || values.length != last.length || changed(values)
+                    || (heartbeatNs > 0 && timestamp - lastTimestamp >= heartbeatNs)) {
+                if (values.length != last.length) {
+                    last = new float[values.length];
+                }
+                System.arraycopy(values, 0, last, 0, values.length);
+                lastTimestamp = timestamp;
+                open = false;
+                return true;
+            }
+            return false;
+        }
+
+        /**
+         * Deliver the next event whatever its values, e.g. after an accuracy change.
+         */
+        void reset() {
+            open = true;
+        }
+
+        private boolean changed(@NonNull final float[] values) {
+            for (int i = 0; i < values.length; ++i) {
+                float tolerance = tolerances[Math.min(i, tolerances.length - 1)];
+                if (mode == RELATIVE) {
+                    tolerance *= Math.abs(last[i]);
+                }
+                if (Math.abs(values[i] - last[i]) > tolerance) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
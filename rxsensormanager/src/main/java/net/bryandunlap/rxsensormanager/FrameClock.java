@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * FrameClock schedules one-shot callbacks on the next display frame.
+ * <p>
+ * Implementations must accept {@link #postFrameCallback(Callback)} and {@link #removeFrameCallback(Callback)}
+ * from any thread, and invoke callbacks on the thread that renders frames.
+ *
+ * @author    Bryan Dunlap
+ * @see       ChoreographerFrameClock
+ * @since     0.9.0
+ */
+public interface FrameClock {
+    /**
+     * Invoke <code>callback</code> once, on the next frame.
+     *
+     * @param    callback  the {@link Callback} to invoke
+     * @since    0.9.0
+     */
+    void postFrameCallback(@NonNull Callback callback);
+
+    /**
+     * Remove a pending <code>callback</code>, if any.
+     *
+     * @param    callback  the {@link Callback} to remove
+     * @since    0.9.0
+     */
+    void removeFrameCallback(@NonNull Callback callback);
+
+    interface Callback {
+        void doFrame(long frameTimeNanos);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.BackpressureStrategy;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableEmitter;
+import io.reactivex.FlowableOnSubscribe;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Action;
+import io.reactivex.functions.Cancellable;
+import io.reactivex.functions.Consumer;
+import java.util.Arrays;
+import org.reactivestreams.Publisher;
+
+/**
+ * FrameCoalescer delivers at most one {@link SensorSample} per sensor type and display frame.
+ * <p>
+ * Events are absorbed on the thread that delivers them, ideally a background thread, and folded into either the
+ * latest or the mean sample since the previous frame. A frame callback is only posted to the {@link FrameClock}
+ * while there is something to deliver, so an idle sensor costs no frame callbacks. Samples are emitted on the
+ * frame thread. Upstream completion is delivered after the pending samples of the next frame.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class FrameCoalescer implements FlowableTransformer<SensorEvent, SensorSample> {
+    /**
+     * Deliver the most recent sample of each frame.
+     */
+    public static final int LATEST = 0;
+
+    /**
+     * Deliver the per-axis mean of all samples of each frame.
+     */
+    public static final int MEAN = 1;
+
+    @NonNull
+    private final FrameClock frameClock;
+    private final int mode;
+
+    /**
+     * Public constructor.
+     *
+     * @param    frameClock  the {@link FrameClock} that drives delivery
+     * @param    mode        either {@link #LATEST} or {@link #MEAN}
+     * @since    0.9.0
+     */
+    public FrameCoalescer(@NonNull final FrameClock frameClock, final int mode) {
+        if (mode != LATEST && mode != MEAN) {
+            throw new IllegalArgumentException("Unknown coalescing mode: " + mode);
+        }
+        this.frameClock = frameClock;
+        this.mode = mode;
+    }
+
+    @Override
+    public Publisher<SensorSample> apply(final Flowable<SensorEvent> upstream) {
+        return Flowable.create(new FlowableOnSubscribe<SensorSample>() {
+            @Override
+            public void subscribe(final FlowableEmitter<SensorSample> emitter) {
+                final Coalescer coalescer = new Coalescer(emitter.serialize());
+                final Disposable disposable = upstream.subscribe(
+                        coalescer,
+                        new Consumer<Throwable>() {
+                            @Override
+                            public void accept(final Throwable throwable) {
+                                coalescer.onError(throwable);
+                            }
+                        },
+                        new Action() {
+                            @Override
+                            public void run() {
+                                coalescer.onComplete();
+                            }
+                        }
+                );
+                emitter.setCancellable(new Cancellable() {
+                    @Override
+                    public void cancel() {
+                        disposable.dispose();
+                        frameClock.removeFrameCallback(coalescer);
+                    }
+                });
+            }
+        }, BackpressureStrategy.LATEST);
+    }
+
+    private final class Coalescer implements Consumer<SensorEvent>, FrameClock.Callback {
+        @NonNull
+        private final FlowableEmitter<SensorSample> emitter;
+
+        private int[] types = new int[2];
+        private float[][] values = new float[2][];
+        private int[] counts = new int[2];
+        private long[] timestamps = new long[2];
+        private int[] accuracies = new int[2];
+        private int sensorCount;
+        private boolean framePosted;
+        private boolean completed;
+
+        private SensorSample[] ready = new SensorSample[2];
+
+        Coalescer(@NonNull final FlowableEmitter<SensorSample> emitter) {
+            this.emitter = emitter;
+        }
+
+        @Override
+        public void accept(@NonNull final SensorEvent sensorEvent) {
+            final boolean post;
+            synchronized (this) {
+                final int slot = slotFor(sensorEvent.sensor.getType(), sensorEvent.values.length);
+                final float[] accumulated = values[slot];
+                final float[] latest = sensorEvent.values;
+                if (mode == MEAN && counts[slot] > 0) {
+                    for (int i = 0; i < latest.length; ++i) {
+                        accumulated[i] += latest[i];
+                    }
+                } else {
+                    System.arraycopy(latest, 0, accumulated, 0, latest.length);
+                }
+                ++counts[slot];
+                timestamps[slot] = sensorEvent.timestamp;
+                accuracies[slot] = sensorEvent.accuracy;
+                post = !framePosted;
+                framePosted = true;
+            }
+            if (post) {
+                frameClock.postFrameCallback(this);
+            }
+        }
+
+        void onError(@NonNull final Throwable throwable) {
+            frameClock.removeFrameCallback(this);
+            emitter.onError(throwable);
+        }
+
+        void onComplete() {
+            final boolean pending;
+            synchronized (this) {
+                completed = true;
+                pending = framePosted;
+            }
+            if (!pending) {
+                frameClock.removeFrameCallback(this);
+                emitter.onComplete();
+            }
+        }
+
+        @Override
+        public void doFrame(final long frameTimeNanos) {
+            int readyCount = 0;
+            final boolean complete;
+            synchronized (this) {
+                if (ready.length < sensorCount) {
+                    ready = new SensorSample[sensorCount];
+                }
+                for (int i = 0; i < sensorCount; ++i) {
+                    if (counts[i] > 0) {
+                        ready[readyCount++] = sample(i);
+                        counts[i] = 0;
+                    }
+                }
+                framePosted = false;
+                complete = completed;
+            }
+            for (int i = 0; i < readyCount; ++i) {
+                emitter.onNext(ready[i]);
+                ready[i] = null;
+            }
+            if (complete) {
+                frameClock.removeFrameCallback(this);
+                emitter.onComplete();
+            }
+        }
+
+        @NonNull
+        private SensorSample sample(final int slot) {
+            final float[] sampleValues = values[slot].clone();
+            if (mode == MEAN) {
+                final float count = counts[slot];
+                for (int i = 0; i < sampleValues.length; ++i) {
+                    sampleValues[i] /= count;
+                }
+            }
+            return new SensorSample(types[slot], timestamps[slot], accuracies[slot], sampleValues);
+        }
+
+        private int slotFor(final int type, final int size) {
+            for (int i = 0; i < sensorCount; ++i) {
+                if (types[i] == type) {
+                    if (values[i].length != size) {
+                        values[i] = new float[size];
+                        counts[i] = 0;
+                    }
+                    return i;
+                }
+            }
+            if (sensorCount == types.length) {
+                types = Arrays.copyOf(types, sensorCount * 2);
+                values = Arrays.copyOf(values, sensorCount * 2);
+                counts = Arrays.copyOf(counts, sensorCount * 2);
+                timestamps = Arrays.copyOf(timestamps, sensorCount * 2);
+                accuracies = Arrays.copyOf(accuracies, sensorCount * 2);
+            }
+            types[sensorCount] = type;
+            values[sensorCount] = new float[size];
+            return sensorCount++;
+        }
+    }
+}
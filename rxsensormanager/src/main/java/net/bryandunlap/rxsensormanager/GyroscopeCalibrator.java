@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * GyroscopeCalibrator tracks the zero-rate bias of a gyroscope on stationary segments.
+ * <p>
+ * A segment is stationary once every axis has stayed within <code>stillnessThreshold</code> for
+ * <code>stillnessTimeoutUs</code>. While stationary the bias follows the raw readings with an exponential moving
+ * average; while moving it is held. Corrections start with the first stationary segment. Suitable for
+ * {@link android.hardware.Sensor#TYPE_GYROSCOPE_UNCALIBRATED} streams, of which only the first three values are
+ * corrected.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class GyroscopeCalibrator extends OnlineCalibrator {
+    @NonNull
+    private final StillnessDetector stillnessDetector;
+    private final float smoothing;
+    private boolean tracking;
+
+    /**
+     * Public constructor.
+     *
+     * @param    stillnessThreshold  the largest per-axis change in rad/s still considered stationary
+     * @param    stillnessTimeoutUs  how long readings must stay stationary before the bias is tracked
+     * @param    smoothing           the moving average weight of each stationary sample, in <code>(0, 1]</code>
+     * @param    tolerance           the bias change in rad/s that triggers a new {@link SensorCalibration}
+     * @since    0.9.0
+     */
+    public GyroscopeCalibrator(
+            final float stillnessThreshold,
+            final int stillnessTimeoutUs,
+            final float smoothing,
+            final float tolerance
+    ) {
+        super(tolerance);
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        this.stillnessDetector = new StillnessDetector(stillnessThreshold, stillnessTimeoutUs * 1000L);
+        this.smoothing = smoothing;
+    }
+
+    @Override
+    boolean update(final long timestampNs, @NonNull final float[] values) {
+        if (stillnessDetector.update(timestampNs, values)) {
+            for (int i = 0; i < AXES; ++i) {
+                offsets[i] = tracking ? offsets[i] + smoothing * (values[i] - offsets[i]) : values[i];
+            }
+            tracking = true;
+        }
+        return tracking;
+    }
+}
@@ -0,0 +1,32 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.os.Handler;
+import android.support.annotation.NonNull;
+
+/**
+ * A {@link Handler} whose thread is held for as long as a listener is registered on it.
+ * <p>
+ * The registration acquires a {@link Handler} before registering its listener and releases it only after the
+ * listener has been unregistered, so the thread never quits while events can still be posted to it.
+ */
+interface HandlerLease {
+    @NonNull
+    Handler acquire();
+
+    void release();
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * A {@link HandlerLease} on a reference-counted {@link HandlerThread}, started by the first acquisition and quit
+ * by the last release.
+ */
+final class HandlerThreadLease implements HandlerLease {
+    @NonNull
+    private final String name;
+    @Nullable
+    private HandlerThread handlerThread;
+    private int users;
+
+    HandlerThreadLease(@NonNull final String name) {
+        this.name = name;
+    }
+
+    @NonNull
+    @Override
+    public synchronized Handler acquire() {
+        if (users++ == 0) {
+            handlerThread = new HandlerThread(name);
+            handlerThread.start();
+        }
+        return new Handler(handlerThread.getLooper());
+    }
+
+    @Override
+    public synchronized void release() {
+        if (--users == 0 && handlerThread != null) {
+            handlerThread.quit();
+            handlerThread = null;
+        }
+    }
+}
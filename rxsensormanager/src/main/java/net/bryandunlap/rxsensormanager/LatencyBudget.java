@@ -0,0 +1,100 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.annotation.TargetApi;
+import android.hardware.Sensor;
+import android.os.Build;
+import android.support.annotation.NonNull;
+
+/**
+ * LatencyBudget derives <code>samplingPeriodUs</code> and <code>maxReportLatencyUs</code> for a {@link Sensor} from
+ * a required sampling rate and a delivery latency budget.
+ * <p>
+ * The batching latency is the largest one that neither exceeds the budget nor overflows the hardware FIFO. The
+ * share of the FIFO available to a sensor is its reserved capacity ({@link Sensor#getFifoReservedEventCount()}),
+ * or an equal split of the shared capacity ({@link Sensor#getFifoMaxEventCount()}) among
+ * <code>sharingSensors</code> sensors, whichever is larger. Only {@link #FIFO_HEADROOM} of that share is planned
+ * for, leaving room for sampling jitter. Sensors without a FIFO, and devices below KITKAT, get no batching.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class LatencyBudget {
+    /**
+     * The fraction of the FIFO share that batching is allowed to fill.
+     */
+    public static final float FIFO_HEADROOM = 0.9f;
+
+    private static final float MICROS_PER_SECOND = 1000000f;
+
+    private final float rateHz;
+    private final int latencyBudgetUs;
+    private final int sharingSensors;
+
+    /**
+     * Public constructor.
+     *
+     * @param    rateHz           the required sampling rate in Hz
+     * @param    latencyBudgetUs  the longest acceptable delivery delay in microseconds
+     * @param    sharingSensors   the number of batched sensors expected to share the hardware FIFO
+     * @since    0.9.0
+     */
+    public LatencyBudget(final float rateHz, final int latencyBudgetUs, final int sharingSensors) {
+        if (!(rateHz > 0)) {
+            throw new IllegalArgumentException("rateHz must be positive: " + rateHz);
+        }
+        if (latencyBudgetUs < 0 || sharingSensors <= 0) {
+            throw new IllegalArgumentException("latencyBudgetUs must be non-negative and sharingSensors positive");
+        }
+        this.rateHz = rateHz;
+        this.latencyBudgetUs = latencyBudgetUs;
+        this.sharingSensors = sharingSensors;
+    }
+
+    /**
+     * @param    sensor  the {@link Sensor} to be registered
+     * @return   The sampling period in microseconds for the required rate, no shorter than
+     *           {@link Sensor#getMinDelay()}.
+     * @since    0.9.0
+     */
+    public int samplingPeriodUs(@NonNull final Sensor sensor) {
+        return Math.max((int) (MICROS_PER_SECOND / rateHz), sensor.getMinDelay());
+    }
+
+    /**
+     * @param    sensor  the {@link Sensor} to be registered
+     * @return   The largest safe report latency in microseconds within the budget.
+     * @since    0.9.0
+     */
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public int maxReportLatencyUs(@NonNull final Sensor sensor) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.KITKAT) {
+            return 0;
+        }
+        final int fifoShare = Math.max(
+                sensor.getFifoReservedEventCount(),
+                sensor.getFifoMaxEventCount() / sharingSensors
+        );
+        int eventPeriodUs = samplingPeriodUs(sensor);
+        // The HAL may report faster than requested, but never slower than its maximum delay.
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP && sensor.getMaxDelay() > 0) {
+            eventPeriodUs = Math.min(eventPeriodUs, sensor.getMaxDelay());
+        }
+        final long fifoFillUs = (long) (fifoShare * FIFO_HEADROOM) * eventPeriodUs;
+        return (int) Math.min(latencyBudgetUs, fifoFillUs);
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import java.util.Arrays;
+
+/**
+ * MagnetometerCalibrator estimates hard-iron offsets and soft-iron scale factors with a recursive least squares
+ * ellipsoid fit.
+ * <p>
+ * The model is an axis-aligned ellipsoid <code>a x&sup2; + b y&sup2; + c z&sup2; + d x + e y + f z = 1</code>,
+ * refined with exponential forgetting at a fixed cost per sample. Its center gives the hard-iron offsets, and
+ * scaling each axis to the mean radius corrects the soft-iron distortion. Cross-axis soft-iron terms are not
+ * modeled. Corrections start once the fit describes a valid ellipsoid, which requires the device to be rotated
+ * through a variety of orientations. Suitable for {@link android.hardware.Sensor#TYPE_MAGNETIC_FIELD_UNCALIBRATED}
+ * streams, of which only the first three values are corrected.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class MagnetometerCalibrator extends OnlineCalibrator {
+    private static final int PARAMETERS = 6;
+    private static final int MIN_SAMPLES = 3 * PARAMETERS;
+    // Inputs are normalized to the order of the geomagnetic field in microtesla to keep the fit well conditioned.
+    private static final double NORMALIZATION = 50.0;
+    private static final double INITIAL_COVARIANCE = 1000.0;
+
+    private final double forgettingFactor;
+    private final double[] theta = new double[PARAMETERS];
+    private final double[] covariance = new double[PARAMETERS * PARAMETERS];
+    private final double[] phi = new double[PARAMETERS];
+    private final double[] gain = new double[PARAMETERS];
+    private long count;
+
+    /**
+     * Public constructor.
+     *
+     * @param    forgettingFactor  the RLS forgetting factor in <code>(0, 1]</code>, e.g. 0.999
+     * @param    tolerance         the parameter change that triggers a new {@link SensorCalibration}
+     * @since    0.9.0
+     */
+    public MagnetometerCalibrator(final float forgettingFactor, final float tolerance) {
+        super(tolerance);
+        if (!(forgettingFactor > 0 && forgettingFactor <= 1)) {
+            throw new IllegalArgumentException("forgettingFactor must be in (0, 1]: " + forgettingFactor);
+        }
+        this.forgettingFactor = forgettingFactor;
+        reset();
+    }
+
+    @Override
+    boolean update(final long timestampNs, @NonNull final float[] values) {
+        final double x = values[0] / NORMALIZATION;
+        final double y = values[1] / NORMALIZATION;
+        final double z = values[2] / NORMALIZATION;
+        phi[0] = x * x;
+        phi[1] = y * y;
+        phi[2] = z * z;
+        phi[3] = x;
+        phi[4] = y;
+        phi[5] = z;
+
+        // gain = P phi, denominator = lambda + phi' P phi
+        double denominator = forgettingFactor;
+        double prediction = 0;
+        for (int i = 0; i < PARAMETERS; ++i) {
+            double sum = 0;
+            for (int j = 0; j < PARAMETERS; ++j) {
+                sum += covariance[i * PARAMETERS + j] * phi[j];
+            }
+            gain[i] = sum;
+            denominator += phi[i] * sum;
+            prediction += phi[i] * theta[i];
+        }
+        final double error = 1.0 - prediction;
+        for (int i = 0; i < PARAMETERS; ++i) {
+            theta[i] += gain[i] / denominator * error;
+        }
+        // P = (P - gain gain' / denominator) / lambda, using the symmetry of P.
+        for (int i = 0; i < PARAMETERS; ++i) {
+            for (int j = 0; j < PARAMETERS; ++j) {
+                covariance[i * PARAMETERS + j] =
+                        (covariance[i * PARAMETERS + j] - gain[i] * gain[j] / denominator) / forgettingFactor;
+            }
+        }
+        if (Double.isNaN(denominator) || Double.isInfinite(denominator)) {
+            reset();
+            return false;
+        }
+        return ++count >= MIN_SAMPLES && solve();
+    }
+
+    private boolean solve() {
+        final double a = theta[0];
+        final double b = theta[1];
+        final double c = theta[2];
+        if (a <= 0 || b <= 0 || c <= 0) {
+            return false;
+        }
+        final double cx = -theta[3] / (2 * a);
+        final double cy = -theta[4] / (2 * b);
+        final double cz = -theta[5] / (2 * c);
+        final double g = 1 + a * cx * cx + b * cy * cy + c * cz * cz;
+        if (g <= 0) {
+            return false;
+        }
+        final double rx = Math.sqrt(g / a);
+        final double ry = Math.sqrt(g / b);
+        final double rz = Math.sqrt(g / c);
+        final double radius = (rx + ry + rz) / 3;
+        offsets[0] = (float) (cx * NORMALIZATION);
+        offsets[1] = (float) (cy * NORMALIZATION);
+        offsets[2] = (float) (cz * NORMALIZATION);
+        scales[0] = (float) (radius / rx);
+        scales[1] = (float) (radius / ry);
+        scales[2] = (float) (radius / rz);
+        return true;
+    }
+
+    private void reset() {
+        Arrays.fill(theta, 0);
+        Arrays.fill(covariance, 0);
+        for (int i = 0; i < PARAMETERS; ++i) {
+            covariance[i * PARAMETERS + i] = INITIAL_COVARIANCE;
+        }
+        count = 0;
+    }
+}
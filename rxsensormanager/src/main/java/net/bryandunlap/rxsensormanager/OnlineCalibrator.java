@@ -0,0 +1,131 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.processors.BehaviorProcessor;
+import org.reactivestreams.Publisher;
+
+/**
+ * OnlineCalibrator is the base of the incremental three-axis calibrators.
+ * <p>
+ * Subclasses refine <code>offsets</code> and <code>scales</code> in constant time per sample. The corrector applies
+ * the current parameters to the first three values of each event in place, and a new {@link SensorCalibration} is
+ * published whenever a parameter has moved by more than the tolerance since the last one.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public abstract class OnlineCalibrator {
+    static final int AXES = 3;
+
+    final float[] offsets = new float[AXES];
+    final float[] scales = {1f, 1f, 1f};
+    private final float[] published = {0f, 0f, 0f, 1f, 1f, 1f};
+    private final float tolerance;
+    private long samples;
+    private boolean calibrated;
+
+    @NonNull
+    private final BehaviorProcessor<SensorCalibration> updates = BehaviorProcessor.create();
+
+    OnlineCalibrator(final float tolerance) {
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that refines the calibration with each event and corrects the event in
+     * place. A calibrator keeps a single estimate, so it should only be applied to one stream at a time.
+     *
+     * @return   A {@link FlowableTransformer} that calibrates {@link SensorEvent}s in place.
+     * @since    0.9.0
+     */
+    @NonNull
+    public final FlowableTransformer<SensorEvent, SensorEvent> corrector() {
+        return new FlowableTransformer<SensorEvent, SensorEvent>() {
+            @Override
+            public Publisher<SensorEvent> apply(final Flowable<SensorEvent> upstream) {
+                return upstream.map(new Function<SensorEvent, SensorEvent>() {
+                    @Override
+                    public SensorEvent apply(final SensorEvent sensorEvent) {
+                        correct(sensorEvent);
+                        return sensorEvent;
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Create a {@link Flowable} of calibration updates. Subscribers receive the latest update first, if any.
+     *
+     * @return   A {@link Flowable} of {@link SensorCalibration} updates.
+     * @since    0.9.0
+     */
+    @NonNull
+    public final Flowable<SensorCalibration> updates() {
+        return updates.onBackpressureLatest();
+    }
+
+    /**
+     * Refine the estimate with <code>values</code> and correct them in place.
+     *
+     * @param    timestampNs  the sample time in nanoseconds
+     * @param    values       the sample values, of which the first three are calibrated
+     * @since    0.9.0
+     */
+    public final void correct(final long timestampNs, @NonNull final float[] values) {
+        ++samples;
+        if (update(timestampNs, values)) {
+            calibrated = true;
+            publishIfMoved();
+        }
+        if (calibrated) {
+            for (int i = 0; i < AXES; ++i) {
+                values[i] = (values[i] - offsets[i]) * scales[i];
+            }
+        }
+    }
+
+    final void correct(@NonNull final SensorEvent sensorEvent) {
+        correct(sensorEvent.timestamp, sensorEvent.values);
+    }
+
+    /**
+     * Refine <code>offsets</code> and <code>scales</code> with a raw sample.
+     *
+     * @return   <code>true</code> if the parameters hold a valid estimate.
+     */
+    abstract boolean update(long timestampNs, @NonNull float[] values);
+
+    private void publishIfMoved() {
+        boolean moved = false;
+        for (int i = 0; i < AXES; ++i) {
+            moved |= Math.abs(offsets[i] - published[i]) > tolerance;
+            moved |= Math.abs(scales[i] - published[AXES + i]) > tolerance;
+        }
+        if (!moved && updates.hasValue()) {
+            return;
+        }
+        System.arraycopy(offsets, 0, published, 0, AXES);
+        System.arraycopy(scales, 0, published, AXES, AXES);
+        updates.onNext(new SensorCalibration(offsets.clone(), scales.clone(), samples));
+    }
+}
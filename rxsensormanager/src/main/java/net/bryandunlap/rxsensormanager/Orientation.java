@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Orientation is the mutable result of a {@link RotationVectorOperator}.
+ * <p>
+ * Like {@link android.hardware.SensorEvent}, a single instance is reused for every emission of a subscription:
+ * the arrays it exposes are overwritten by the next sample, so they must be read within <code>onNext</code> or
+ * copied. They must not be modified.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class Orientation {
+    final float[] quaternion = new float[4];
+    final float[] matrix = new float[9];
+    final float[] angles = new float[3];
+    long timestamp;
+
+    Orientation() {
+        // created by RotationVectorOperator
+    }
+
+    /**
+     * @return   The sample time in nanoseconds.
+     * @since    0.9.0
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return   The unit quaternion <code>[w, x, y, z]</code>, after reference and smoothing but before remapping.
+     * @since    0.9.0
+     */
+    @NonNull
+    public float[] quaternion() {
+        return quaternion;
+    }
+
+    /**
+     * @return   The row-major 3x3 rotation matrix, remapped, in the layout of
+     *           {@link android.hardware.SensorManager#getRotationMatrixFromVector(float[], float[])}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public float[] matrix() {
+        return matrix;
+    }
+
+    /**
+     * @return   The azimuth, pitch and roll in radians, in the convention of
+     *           {@link android.hardware.SensorManager#getOrientation(float[], float[])}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public float[] angles() {
+        return angles;
+    }
+}
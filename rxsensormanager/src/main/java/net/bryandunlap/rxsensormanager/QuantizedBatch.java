@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * QuantizedBatch packs a window of samples of one sensor type into flat arrays: one <code>long[]</code> of
+ * timestamps, one <code>byte[]</code> of accuracies and one <code>byte[]</code> or <code>short[]</code> of
+ * fixed-point codes laid out <code>[sample * axes() + axis]</code>. The type, code width and step are stored once
+ * per batch rather than once per sample.
+ * <p>
+ * A value is reconstructed as <code>code * step</code>. Batches are created by
+ * {@link SampleQuantizer#batches(int, int)} or {@link SampleQuantizer#batches(int)}.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class QuantizedBatch {
+    private final int type;
+    private final int bits;
+    private final float step;
+    private final int axes;
+    private final int size;
+    @NonNull
+    private final long[] timestamps;
+    @NonNull
+    private final byte[] accuracies;
+    @Nullable
+    private final byte[] codes8;
+    @Nullable
+    private final short[] codes16;
+
+    QuantizedBatch(
+            final int type,
+            final int bits,
+            final float step,
+            final int axes,
+            final int size,
+            @NonNull final long[] timestamps,
+            @NonNull final byte[] accuracies,
+            @Nullable final byte[] codes8,
+            @Nullable final short[] codes16
+    ) {
+        this.type = type;
+        this.bits = bits;
+        this.step = step;
+        this.axes = axes;
+        this.size = size;
+        this.timestamps = timestamps;
+        this.accuracies = accuracies;
+        this.codes8 = codes8;
+        this.codes16 = codes16;
+    }
+
+    public int type() {
+        return type;
+    }
+
+    /**
+     * @return   The width of each code, either {@link SampleQuantizer#BITS_8} or {@link SampleQuantizer#BITS_16}.
+     * @since    0.9.0
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * @return   The value of one code unit, shared by every sample in the batch.
+     * @since    0.9.0
+     */
+    public float step() {
+        return step;
+    }
+
+    /**
+     * @return   The number of values per sample.
+     * @since    0.9.0
+     */
+    public int axes() {
+        return axes;
+    }
+
+    /**
+     * @return   The number of samples in the batch.
+     * @since    0.9.0
+     */
+    public int size() {
+        return size;
+    }
+
+    public long timestamp(final int sample) {
+        return timestamps[checkSample(sample)];
+    }
+
+    public int accuracy(final int sample) {
+        return accuracies[checkSample(sample)];
+    }
+
+    /**
+     * @param    sample  the sample index
+     * @param    axis    the value index within the sample
+     * @return   The signed fixed-point code stored for <code>axis</code> of <code>sample</code>.
+     * @since    0.9.0
+     */
+    public int code(final int sample, final int axis) {
+        if (axis < 0 || axis >= axes) {
+            throw new IndexOutOfBoundsException("axis: " + axis + ", axes: " + axes);
+        }
+        final int index = checkSample(sample) * axes + axis;
+        return codes16 != null ? codes16[index] : codes8[index];
+    }
+
+    /**
+     * @param    sample  the sample index
+     * @param    axis    the value index within the sample
+     * @return   The reconstructed value stored for <code>axis</code> of <code>sample</code>.
+     * @since    0.9.0
+     */
+    public float value(final int sample, final int axis) {
+        return code(sample, axis) * step;
+    }
+
+    /**
+     * Reconstruct a single {@link SensorSample} from this batch.
+     *
+     * @param    sample  the sample index
+     * @return   A {@link SensorSample} holding the reconstructed values.
+     * @since    0.9.0
+     */
+    @NonNull
+    public SensorSample toSensorSample(final int sample) {
+        final float[] values = new float[axes];
+        for (int axis = 0; axis < axes; ++axis) {
+            values[axis] = value(sample, axis);
+        }
+        return new SensorSample(type, timestamps[sample], accuracies[sample], values);
+    }
+
+    /**
+     * Reconstruct every {@link SensorSample} in this batch, in order.
+     *
+     * @return   A {@link List} of the reconstructed {@link SensorSample}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public List<SensorSample> toSensorSamples() {
+        final List<SensorSample> samples = new ArrayList<SensorSample>(size);
+        for (int i = 0; i < size; ++i) {
+            samples.add(toSensorSample(i));
+        }
+        return samples;
+    }
+
+    private int checkSample(final int sample) {
+        if (sample < 0 || sample >= size) {
+            throw new IndexOutOfBoundsException("sample: " + sample + ", size: " + size);
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * QuantizedSample holds the data of a {@link SensorSample} with its values stored as 8-bit or 16-bit fixed-point
+ * codes. {@link #toSensorSample()} reconstructs the floating-point sample.
+ * <p>
+ * A value is reconstructed as <code>code * step</code>. Samples are created by a {@link SampleQuantizer}, which
+ * derives the step from the sensor metadata and documents the resulting error bound.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class QuantizedSample {
+    private final int type;
+    private final long timestamp;
+    private final int accuracy;
+    private final int bits;
+    private final float step;
+    @NonNull
+    private final byte[] codes;
+
+    QuantizedSample(
+            final int type,
+            final long timestamp,
+            final int accuracy,
+            final int bits,
+            final float step,
+            @NonNull final byte[] codes
+    ) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.accuracy = accuracy;
+        this.bits = bits;
+        this.step = step;
+        this.codes = codes;
+    }
+
+    public int type() {
+        return type;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public int accuracy() {
+        return accuracy;
+    }
+
+    /**
+     * @return   The width of each code, either {@link SampleQuantizer#BITS_8} or {@link SampleQuantizer#BITS_16}.
+     * @since    0.9.0
+     */
+    public int bits() {
+        return bits;
+    }
+
+    /**
+     * @return   The value of one code unit.
+     * @since    0.9.0
+     */
+    public float step() {
+        return step;
+    }
+
+    public int size() {
+        return bits == SampleQuantizer.BITS_16 ? codes.length >> 1 : codes.length;
+    }
+
+    /**
+     * @param    index  the value index
+     * @return   The signed fixed-point code stored at <code>index</code>.
+     * @since    0.9.0
+     */
+    public int code(final int index) {
+        if (bits == SampleQuantizer.BITS_16) {
+            return (short) ((codes[index << 1] << 8) | (codes[(index << 1) + 1] & 0xFF));
+        }
+        return codes[index];
+    }
+
+    /**
+     * @param    index  the value index
+     * @return   The reconstructed value stored at <code>index</code>.
+     * @since    0.9.0
+     */
+    public float value(final int index) {
+        return code(index) * step;
+    }
+
+    /**
+     * Reconstruct a {@link SensorSample} from this sample.
+     *
+     * @return   A {@link SensorSample} holding the reconstructed values.
+     * @since    0.9.0
+     */
+    @NonNull
+    public SensorSample toSensorSample() {
+        final float[] values = new float[size()];
+        for (int i = 0; i < values.length; ++i) {
+            values[i] = value(i);
+        }
+        return new SensorSample(type, timestamp, accuracy, values);
+    }
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Predicate;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * RobustFilters creates per-axis outlier filters for {@link SensorEvent} streams.
+ * <p>
+ * Every filter rewrites the values of an event in place and keeps its state in primitive arrays owned by the
+ * subscription. The window filters update in O(log window) per sample per axis using {@link RunningMedian}.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class RobustFilters {
+    /**
+     * Replace flagged values with the robust estimate and keep the event.
+     *
+     * @since    0.9.0
+     */
+    public static final int REPLACE_OUTLIERS = 0;
+    /**
+     * Drop events in which any value is flagged.
+     *
+     * @since    0.9.0
+     */
+    public static final int DROP_OUTLIERS = 1;
+
+    /**
+     * Scales a median absolute deviation to a standard deviation for normally distributed noise.
+     */
+    static final float MAD_SCALE = 1.4826f;
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    private RobustFilters() {
+        // no instances
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that replaces each value with the median of its axis over the last
+     * <code>window</code> events.
+     *
+     * @param    window  the number of events in the median window
+     * @return   A {@link FlowableTransformer} that median filters {@link SensorEvent}s in place.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<SensorEvent, SensorEvent> median(final int window) {
+        checkWindow(window);
+        return perSubscription(new Callable<Predicate<SensorEvent>>() {
+            @Override
+            public Predicate<SensorEvent> call() {
+                return new MedianFilter(window);
+            }
+        });
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that applies a causal Hampel filter: a value is flagged when it lies more
+     * than <code>threshold</code> scaled median absolute deviations from the median of the previous
+     * <code>window</code> values of its axis. Flagged values are replaced by that median or their event is dropped.
+     * Nothing is flagged until the window has filled.
+     * <p>
+     * The median absolute deviation is itself a running median of each value's deviation from the median at the
+     * time it arrived, which keeps the update at O(log window) instead of rescanning the window.
+     *
+     * @param    window     the number of events in the median window
+     * @param    threshold  the number of scaled median absolute deviations tolerated, typically 3
+     * @param    mode       {@link #REPLACE_OUTLIERS} or {@link #DROP_OUTLIERS}
+     * @return   A {@link FlowableTransformer} that Hampel filters {@link SensorEvent}s in place.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<SensorEvent, SensorEvent> hampel(
+            final int window,
+            final float threshold,
+            final int mode
+    ) {
+        checkWindow(window);
+        checkMode(mode);
+        if (!(threshold > 0)) {
+            throw new IllegalArgumentException("threshold must be positive: " + threshold);
+        }
+        return perSubscription(new Callable<Predicate<SensorEvent>>() {
+            @Override
+            public Predicate<SensorEvent> call() {
+                return new HampelFilter(window, threshold, mode == DROP_OUTLIERS);
+            }
+        });
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that flags values changing faster than <code>maxRatePerSecond</code>
+     * since the previous accepted event. Flagged values are clamped to the largest allowed change or their event is
+     * dropped.
+     *
+     * @param    maxRatePerSecond  the largest change per axis per second, in the units of the sensor
+     * @param    mode              {@link #REPLACE_OUTLIERS} or {@link #DROP_OUTLIERS}
+     * @return   A {@link FlowableTransformer} that rate limits {@link SensorEvent}s in place.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<SensorEvent, SensorEvent> rateLimit(
+            final float maxRatePerSecond,
+            final int mode
+    ) {
+        checkMode(mode);
+        if (!(maxRatePerSecond > 0)) {
+            throw new IllegalArgumentException("maxRatePerSecond must be positive: " + maxRatePerSecond);
+        }
+        return perSubscription(new Callable<Predicate<SensorEvent>>() {
+            @Override
+            public Predicate<SensorEvent> call() {
+                return new RateLimiter(maxRatePerSecond, mode == DROP_OUTLIERS);
+            }
+        });
+    }
+
+    @NonNull
+    private static FlowableTransformer<SensorEvent, SensorEvent> perSubscription(
+            @NonNull final Callable<Predicate<SensorEvent>> filterFactory
+    ) {
+        return new FlowableTransformer<SensorEvent, SensorEvent>() {
+            @Override
+            public Publisher<SensorEvent> apply(final Flowable<SensorEvent> upstream) {
+                return Flowable.defer(new Callable<Publisher<SensorEvent>>() {
+                    @Override
+                    public Publisher<SensorEvent> call() throws Exception {
+                        return upstream.filter(filterFactory.call());
+                    }
+                });
+            }
+        };
+    }
+
+    private static void checkWindow(final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+    }
+
+    private static void checkMode(final int mode) {
+        if (mode != REPLACE_OUTLIERS && mode != DROP_OUTLIERS) {
+            throw new IllegalArgumentException("Unknown outlier mode: " + mode);
+        }
+    }
+
+    private static final class MedianFilter implements Predicate<SensorEvent> {
+        private final int window;
+        private RunningMedian[] medians = new RunningMedian[0];
+
+        MedianFilter(final int window) {
+            this.window = window;
+        }
+
+        @Override
+        public boolean test(final SensorEvent sensorEvent) {
+            final float[] values = sensorEvent.values;
+            if (medians.length != values.length) {
+                medians = newMedians(values.length, window);
+            }
+            for (int i = 0; i < values.length; ++i) {
+                values[i] = medians[i].add(values[i]);
+            }
+            return true;
+        }
+    }
+
+    static final class HampelFilter implements Predicate<SensorEvent> {
+        private final int window;
+        private final float limit;
+        private final boolean drop;
+        private RunningMedian[] medians = new RunningMedian[0];
+        private RunningMedian[] deviations = new RunningMedian[0];
+        private float[] estimates = new float[0];
+
+        HampelFilter(final int window, final float threshold, final boolean drop) {
+            this.window = window;
+            this.limit = threshold * MAD_SCALE;
+            this.drop = drop;
+        }
+
+        @Override
+        public boolean test(final SensorEvent sensorEvent) {
+            return update(sensorEvent.values);
+        }
+
+        boolean update(@NonNull final float[] values) {
+            if (medians.length != values.length) {
+                medians = newMedians(values.length, window);
+                deviations = newMedians(values.length, window);
+                estimates = new float[values.length];
+            }
+            boolean flagged = false;
+            for (int i = 0; i < values.length; ++i) {
+                final float value = values[i];
+                final float median = medians[i].median();
+                if (medians[i].size() == window && Math.abs(value - median) > limit * deviations[i].median()) {
+                    flagged = true;
+                    estimates[i] = median;
+                } else {
+                    estimates[i] = value;
+                }
+                deviations[i].add(Math.abs(value - medians[i].add(value)));
+            }
+            if (flagged && drop) {
+                return false;
+            }
+            System.arraycopy(estimates, 0, values, 0, values.length);
+            return true;
+        }
+    }
+
+    static final class RateLimiter implements Predicate<SensorEvent> {
+        private final float maxRatePerSecond;
+        private final boolean drop;
+        private float[] previous = new float[0];
+        private long previousTimestampNs;
+        private boolean primed;
+
+        RateLimiter(final float maxRatePerSecond, final boolean drop) {
+            this.maxRatePerSecond = maxRatePerSecond;
+            this.drop = drop;
+        }
+
+        @Override
+        public boolean test(final SensorEvent sensorEvent) {
+            return update(sensorEvent.timestamp, sensorEvent.values);
+        }
+
+        boolean update(final long timestampNs, @NonNull final float[] values) {
+            if (!primed || previous.length != values.length) {
+                previous = values.clone();
+                previousTimestampNs = timestampNs;
+                primed = true;
+                return true;
+            }
+            final float maxChange = maxRatePerSecond * Math.max(0L, timestampNs - previousTimestampNs)
+                    / NANOS_PER_SECOND;
+            if (drop) {
+                for (int i = 0; i < values.length; ++i) {
+                    if (Math.abs(values[i] - previous[i]) > maxChange) {
+                        return false;
+                    }
+                }
+            } else {
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = Math.max(previous[i] - maxChange, Math.min(previous[i] + maxChange, values[i]));
+                }
+            }
+            System.arraycopy(values, 0, previous, 0, values.length);
+            previousTimestampNs = timestampNs;
+            return true;
+        }
+    }
+
+    @NonNull
+    private static RunningMedian[] newMedians(final int axes, final int window) {
+        final RunningMedian[] medians = new RunningMedian[axes];
+        for (int i = 0; i < axes; ++i) {
+            medians[i] = new RunningMedian(window);
+        }
+        return medians;
+    }
+}
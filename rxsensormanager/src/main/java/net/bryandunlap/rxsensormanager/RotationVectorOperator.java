@@ -0,0 +1,273 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.hardware.SensorManager;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Function;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.reactivestreams.Publisher;
+
+/**
+ * RotationVectorOperator turns {@link android.hardware.Sensor#TYPE_ROTATION_VECTOR} or
+ * {@link android.hardware.Sensor#TYPE_GAME_ROTATION_VECTOR} events into an {@link Orientation} without allocating.
+ * <p>
+ * Each sample is converted to a quaternion, optionally expressed relative to a captured reference, optionally
+ * smoothed with spherical linear interpolation, and then expanded into a rotation matrix that is remapped like
+ * {@link SensorManager#remapCoordinateSystem(float[], int, int, float[])} and decomposed into Euler angles like
+ * {@link SensorManager#getOrientation(float[], float[])}. All scratch state belongs to the subscription and is
+ * only touched from the thread that delivers its events.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class RotationVectorOperator implements FlowableTransformer<SensorEvent, Orientation> {
+    private static final float SLERP_LINEAR_THRESHOLD = 0.9995f;
+
+    private final int remapX;
+    private final int remapY;
+    private final float smoothing;
+    private final boolean relative;
+    @NonNull
+    private final AtomicInteger referenceGeneration = new AtomicInteger();
+
+    /**
+     * Public constructor.
+     *
+     * @param    remapX     the {@link SensorManager} axis the device X axis maps to, e.g.
+     *                      {@link SensorManager#AXIS_X}
+     * @param    remapY     the {@link SensorManager} axis the device Y axis maps to, e.g.
+     *                      {@link SensorManager#AXIS_Y}
+     * @param    smoothing  the slerp weight of each new sample in <code>(0, 1]</code>, 1 disabling smoothing
+     * @param    relative   whether rotations are expressed relative to a captured reference
+     * @since    0.9.0
+     */
+    public RotationVectorOperator(final int remapX, final int remapY, final float smoothing, final boolean relative) {
+        if (!isValidRemap(remapX, remapY)) {
+            throw new IllegalArgumentException("Invalid axis remapping: " + remapX + ", " + remapY);
+        }
+        if (!(smoothing > 0 && smoothing <= 1)) {
+            throw new IllegalArgumentException("smoothing must be in (0, 1]: " + smoothing);
+        }
+        this.remapX = remapX;
+        this.remapY = remapY;
+        this.smoothing = smoothing;
+        this.relative = relative;
+    }
+
+    /**
+     * Capture the next sample of every active subscription as its new reference. The first sample of a
+     * subscription is always captured. Has no effect unless the operator is relative.
+     *
+     * @since    0.9.0
+     */
+    public void captureReference() {
+        referenceGeneration.incrementAndGet();
+    }
+
+    @Override
+    public Publisher<Orientation> apply(final Flowable<SensorEvent> upstream) {
+        return Flowable.defer(new Callable<Publisher<Orientation>>() {
+            @Override
+            public Publisher<Orientation> call() {
+                return upstream.map(new RotationState());
+            }
+        });
+    }
+
+    private final class RotationState implements Function<SensorEvent, Orientation> {
+        @NonNull
+        private final Orientation orientation = new Orientation();
+        private final float[] sample = new float[4];
+        private final float[] reference = new float[4];
+        private final float[] unmapped = new float[9];
+        private int capturedGeneration;
+        private boolean primed;
+
+        @Override
+        public Orientation apply(final SensorEvent sensorEvent) {
+            quaternionFromVector(sensorEvent.values, sample);
+            if (relative) {
+                final int generation = referenceGeneration.get();
+                if (!primed || generation != capturedGeneration) {
+                    System.arraycopy(sample, 0, reference, 0, 4);
+                    capturedGeneration = generation;
+                }
+                relativeTo(reference, sample);
+            }
+            final float[] quaternion = orientation.quaternion;
+            if (primed && smoothing < 1) {
+                slerp(quaternion, sample, smoothing, quaternion);
+            } else {
+                System.arraycopy(sample, 0, quaternion, 0, 4);
+            }
+            primed = true;
+            matrixFromQuaternion(quaternion, unmapped);
+            remap(unmapped, remapX, remapY, orientation.matrix);
+            anglesFromMatrix(orientation.matrix, orientation.angles);
+            orientation.timestamp = sensorEvent.timestamp;
+            return orientation;
+        }
+    }
+
+    /**
+     * Like {@link SensorManager#getQuaternionFromVector(float[], float[])}, writing <code>[w, x, y, z]</code>.
+     */
+    static void quaternionFromVector(@NonNull final float[] vector, @NonNull final float[] quaternion) {
+        final float x = vector[0];
+        final float y = vector[1];
+        final float z = vector[2];
+        final float w;
+        if (vector.length >= 4) {
+            w = vector[3];
+        } else {
+            final float squared = 1 - x * x - y * y - z * z;
+            w = squared > 0 ? (float) Math.sqrt(squared) : 0;
+        }
+        quaternion[0] = w;
+        quaternion[1] = x;
+        quaternion[2] = y;
+        quaternion[3] = z;
+    }
+
+    /**
+     * Replace <code>q</code> with <code>conjugate(reference) * q</code>.
+     */
+    static void relativeTo(@NonNull final float[] reference, @NonNull final float[] q) {
+        final float aw = reference[0];
+        final float ax = -reference[1];
+        final float ay = -reference[2];
+        final float az = -reference[3];
+        final float bw = q[0];
+        final float bx = q[1];
+        final float by = q[2];
+        final float bz = q[3];
+        q[0] = aw * bw - ax * bx - ay * by - az * bz;
+        q[1] = aw * bx + ax * bw + ay * bz - az * by;
+        q[2] = aw * by - ax * bz + ay * bw + az * bx;
+        q[3] = aw * bz + ax * by - ay * bx + az * bw;
+    }
+
+    /**
+     * Spherical linear interpolation from <code>from</code> towards <code>to</code>. <code>out</code> may alias
+     * <code>from</code>.
+     */
+    static void slerp(
+            @NonNull final float[] from,
+            @NonNull final float[] to,
+            final float t,
+            @NonNull final float[] out
+    ) {
+        float dot = from[0] * to[0] + from[1] * to[1] + from[2] * to[2] + from[3] * to[3];
+        // q and -q are the same rotation; interpolate along the shorter arc.
+        final float sign = dot < 0 ? -1f : 1f;
+        dot *= sign;
+        final float fromWeight;
+        final float toWeight;
+        if (dot > SLERP_LINEAR_THRESHOLD) {
+            fromWeight = 1 - t;
+            toWeight = t * sign;
+        } else {
+            final double theta = Math.acos(dot);
+            final double sinTheta = Math.sin(theta);
+            fromWeight = (float) (Math.sin((1 - t) * theta) / sinTheta);
+            toWeight = (float) (Math.sin(t * theta) / sinTheta) * sign;
+        }
+        float norm = 0;
+        for (int i = 0; i < 4; ++i) {
+            out[i] = fromWeight * from[i] + toWeight * to[i];
+            norm += out[i] * out[i];
+        }
+        norm = (float) Math.sqrt(norm);
+        for (int i = 0; i < 4; ++i) {
+            out[i] /= norm;
+        }
+    }
+
+    /**
+     * Like {@link SensorManager#getRotationMatrixFromVector(float[], float[])} for a 3x3 matrix.
+     */
+    static void matrixFromQuaternion(@NonNull final float[] q, @NonNull final float[] r) {
+        final float q0 = q[0];
+        final float q1 = q[1];
+        final float q2 = q[2];
+        final float q3 = q[3];
+        final float sqQ1 = 2 * q1 * q1;
+        final float sqQ2 = 2 * q2 * q2;
+        final float sqQ3 = 2 * q3 * q3;
+        final float q1q2 = 2 * q1 * q2;
+        final float q3q0 = 2 * q3 * q0;
+        final float q1q3 = 2 * q1 * q3;
+        final float q2q0 = 2 * q2 * q0;
+        final float q2q3 = 2 * q2 * q3;
+        final float q1q0 = 2 * q1 * q0;
+        r[0] = 1 - sqQ2 - sqQ3;
+        r[1] = q1q2 - q3q0;
+        r[2] = q1q3 + q2q0;
+        r[3] = q1q2 + q3q0;
+        r[4] = 1 - sqQ1 - sqQ3;
+        r[5] = q2q3 - q1q0;
+        r[6] = q1q3 - q2q0;
+        r[7] = q2q3 + q1q0;
+        r[8] = 1 - sqQ1 - sqQ2;
+    }
+
+    /**
+     * Like {@link SensorManager#remapCoordinateSystem(float[], int, int, float[])} for a 3x3 matrix.
+     */
+    static void remap(@NonNull final float[] in, final int remapX, final int remapY, @NonNull final float[] out) {
+        int remapZ = remapX ^ remapY;
+        final int x = (remapX & 0x3) - 1;
+        final int y = (remapY & 0x3) - 1;
+        final int z = (remapZ & 0x3) - 1;
+        // The sign of Z follows from the handedness of the new X and Y axes.
+        final int axisY = (z + 1) % 3;
+        final int axisZ = (z + 2) % 3;
+        if (((x ^ axisY) | (y ^ axisZ)) != 0) {
+            remapZ ^= 0x80;
+        }
+        final boolean negateX = remapX >= 0x80;
+        final boolean negateY = remapY >= 0x80;
+        final boolean negateZ = remapZ >= 0x80;
+        for (int row = 0; row < 3; ++row) {
+            final int offset = row * 3;
+            out[offset + x] = negateX ? -in[offset] : in[offset];
+            out[offset + y] = negateY ? -in[offset + 1] : in[offset + 1];
+            out[offset + z] = negateZ ? -in[offset + 2] : in[offset + 2];
+        }
+    }
+
+    /**
+     * Like {@link SensorManager#getOrientation(float[], float[])} for a 3x3 matrix.
+     */
+    static void anglesFromMatrix(@NonNull final float[] r, @NonNull final float[] angles) {
+        angles[0] = (float) Math.atan2(r[1], r[4]);
+        angles[1] = (float) Math.asin(Math.max(-1f, Math.min(1f, -r[7])));
+        angles[2] = (float) Math.atan2(-r[6], r[8]);
+    }
+
+    private static boolean isValidRemap(final int remapX, final int remapY) {
+        return (remapX & 0x7C) == 0
+                && (remapY & 0x7C) == 0
+                && (remapX & 0x3) != 0
+                && (remapY & 0x3) != 0
+                && (remapX & 0x3) != (remapY & 0x3);
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+/**
+ * Median of the last <code>window</code> values in O(log window) per update.
+ * <p>
+ * Values live in a ring buffer of slots. The lower half of the window is a max-heap and the upper half a min-heap,
+ * both holding slot indices, and every slot remembers its heap and position. Once the window is full, the oldest
+ * slot is overwritten and re-sifted in place, after which at most one exchange of the heap tops restores the
+ * ordering, so nothing is allocated after construction. Instances are not thread-safe.
+ */
+final class RunningMedian {
+    private static final int LOWER = 0;
+    private static final int UPPER = 1;
+
+    private final float[] values;
+    private final int[][] heaps;
+    private final int[] sizes = new int[2];
+    private final int[] heapOf;
+    private final int[] indexOf;
+    private int count;
+    private int oldest;
+
+    RunningMedian(final int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("window must be positive: " + window);
+        }
+        values = new float[window];
+        heaps = new int[][] {new int[window], new int[window]};
+        heapOf = new int[window];
+        indexOf = new int[window];
+    }
+
+    /**
+     * Add <code>value</code>, evicting the oldest value once the window is full.
+     *
+     * @return   The median of the window including <code>value</code>.
+     */
+    float add(final float value) {
+        if (count < values.length) {
+            insert(count++, value);
+        } else {
+            replace(oldest, value);
+            oldest = (oldest + 1) % values.length;
+        }
+        return median();
+    }
+
+    float median() {
+        if (count == 0) {
+            return Float.NaN;
+        }
+        final float lower = values[heaps[LOWER][0]];
+        return sizes[LOWER] > sizes[UPPER] ? lower : (lower + values[heaps[UPPER][0]]) / 2f;
+    }
+
+    int size() {
+        return count;
+    }
+
+    private void insert(final int slot, final float value) {
+        values[slot] = value;
+        final int heap = sizes[LOWER] == 0 || value <= values[heaps[LOWER][0]] ? LOWER : UPPER;
+        heapOf[slot] = heap;
+        indexOf[slot] = sizes[heap];
+        heaps[heap][sizes[heap]++] = slot;
+        siftUp(heap, indexOf[slot]);
+        if (sizes[LOWER] > sizes[UPPER] + 1) {
+            move(LOWER, UPPER);
+        } else if (sizes[UPPER] > sizes[LOWER]) {
+            move(UPPER, LOWER);
+        }
+    }
+
+    private void replace(final int slot, final float value) {
+        values[slot] = value;
+        final int heap = heapOf[slot];
+        siftDown(heap, siftUp(heap, indexOf[slot]));
+        if (sizes[UPPER] > 0) {
+            final int lowerTop = heaps[LOWER][0];
+            final int upperTop = heaps[UPPER][0];
+            if (values[lowerTop] > values[upperTop]) {
+                place(LOWER, 0, upperTop);
+                place(UPPER, 0, lowerTop);
+                siftDown(LOWER, 0);
+                siftDown(UPPER, 0);
+            }
+        }
+    }
+
+    private void move(final int from, final int to) {
+        final int slot = heaps[from][0];
+        place(from, 0, heaps[from][--sizes[from]]);
+        siftDown(from, 0);
+        place(to, sizes[to]++, slot);
+        siftUp(to, sizes[to] - 1);
+    }
+
+    private int siftUp(final int heap, int index) {
+        final int slot = heaps[heap][index];
+        while (index > 0) {
+            final int parent = (index - 1) / 2;
+            if (!before(heap, slot, heaps[heap][parent])) {
+                break;
+            }
+            place(heap, index, heaps[heap][parent]);
+            index = parent;
+        }
+        place(heap, index, slot);
+        return index;
+    }
+
+    private void siftDown(final int heap, int index) {
+        final int size = sizes[heap];
+        if (index >= size) {
+            return;
+        }
+        final int slot = heaps[heap][index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(heap, heaps[heap][child + 1], heaps[heap][child])) {
+                ++child;
+            }
+            if (!before(heap, heaps[heap][child], slot)) {
+                break;
+            }
+            place(heap, index, heaps[heap][child]);
+            index = child;
+        }
+        place(heap, index, slot);
+    }
+
+    private void place(final int heap, final int index, final int slot) {
+        heaps[heap][index] = slot;
+        heapOf[slot] = heap;
+        indexOf[slot] = index;
+    }
+
+    /**
+     * @return   <code>true</code> if slot <code>a</code> belongs strictly above slot <code>b</code> in the heap.
+     */
+    private boolean before(final int heap, final int a, final int b) {
+        return heap == LOWER ? values[a] > values[b] : values[a] < values[b];
+    }
+}
@@ -23,7 +23,11 @@ import android.hardware.SensorManager;
 import android.hardware.TriggerEvent;
 import android.hardware.TriggerEventListener;
 import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.MainThread;
 import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
 import io.reactivex.BackpressureStrategy;
 import io.reactivex.Flowable;
 import io.reactivex.FlowableEmitter;
@@ -31,10 +35,21 @@ import io.reactivex.FlowableOnSubscribe;
 import io.reactivex.Observable;
 import io.reactivex.ObservableEmitter;
 import io.reactivex.ObservableOnSubscribe;
+import io.reactivex.Scheduler;
 import io.reactivex.Single;
 import io.reactivex.SingleEmitter;
 import io.reactivex.SingleOnSubscribe;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.functions.Consumer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.LongConsumer;
+import io.reactivex.functions.Predicate;
+import io.reactivex.schedulers.Schedulers;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.reactivestreams.Publisher;
 
 /**
  * RxSensorManager exposes a reactive interface to the Android {@link SensorManager} API.
@@ -44,8 +59,14 @@ import io.reactivex.disposables.Disposable;
  * @since     0.8.0
  */
 public class RxSensorManager {
+    private static final int UNKNOWN_SENSOR_TYPE = -1;
+
     @NonNull
     private final SensorManager sensorManager;
+    @Nullable
+    private final SensorTracer tracer;
+    @NonNull
+    private final VirtualSensors virtualSensors = new VirtualSensors(this);
 
     /**
      * Public constructor.
@@ -54,7 +75,22 @@ public class RxSensorManager {
      * @since    0.8.0
      */
     public RxSensorManager(@NonNull final SensorManager sensorManager) {
+        this(sensorManager, null);
+    }
+
+    /**
+     * Public constructor with tracing.
+     * <p>
+     * <code>tracer</code> receives sections around listener registration and unregistration, sensor lookups and
+     * event delivery. Without a tracer none of these points do any tracing work.
+     *
+     * @param    sensorManager  a {@link SensorManager} instance to wrap
+     * @param    tracer         the {@link SensorTracer} to report to, or <code>null</code> to disable tracing
+     * @since    0.9.0
+     */
+    public RxSensorManager(@NonNull final SensorManager sensorManager, @Nullable final SensorTracer tracer) {
         this.sensorManager = sensorManager;
+        this.tracer = tracer;
     }
 
     /**
@@ -96,6 +132,343 @@ public class RxSensorManager {
         );
     }
 
+    /**
+     * Create a {@link Flowable} that notifies subscribers of meaningful changes in a given {@link Sensor}.
+     * <p>
+     * Events that stay within the {@link Deadband} of the last delivered event are discarded inside the listener, so
+     * they never reach the emitter or anything downstream. The first event, the first event after an accuracy
+     * change, and the first event after each heartbeat interval are always delivered. Intended for slow-changing
+     * sensors such as {@link Sensor#TYPE_LIGHT}, {@link Sensor#TYPE_PRESSURE}, {@link Sensor#TYPE_PROXIMITY} and
+     * {@link Sensor#TYPE_AMBIENT_TEMPERATURE}.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs  maximum time in microseconds that events can be delayed before being reported
+     * @param    deadband            the {@link Deadband} that decides which events are delivered
+     * @return   A {@link Flowable} that notifies subscribers of meaningful changes in a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorEvent> observeSensor(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            @NonNull final Deadband deadband
+    ) {
+        return createSensorEventFlowable(
+                type,
+                samplingPeriodUs,
+                maxReportLatencyUs,
+                new DeadbandListenerFactory(deadband)
+        );
+    }
+
+    /**
+     * Create a {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}, with sampling period
+     * and report latency planned by a {@link LatencyBudget}.
+     * <p>
+     * The sampling period honours the required rate and the report latency is the largest one that fits both the
+     * latency budget and the sensor's share of the hardware FIFO. Both are computed from the {@link Sensor} resolved
+     * at subscription time.
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    latencyBudget  the {@link LatencyBudget} to plan the registration with
+     * @return   A {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorEvent> observeSensor(final int type, @NonNull final LatencyBudget latencyBudget) {
+        return createSensorEventFlowable(
+                type,
+                new BudgetedSamplingPolicy(latencyBudget),
+                null,
+                new SensorChangedListenerFactory()
+        );
+    }
+
+    /**
+     * Create a {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}, delivering events on
+     * the thread of the given {@link Handler}.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs  maximum time in microseconds that events can be delayed before being reported
+     * @param    handler             the {@link Handler} whose thread receives the events
+     * @return   A {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorEvent> observeSensor(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            @NonNull final Handler handler
+    ) {
+        return createSensorEventFlowable(
+                type,
+                new FixedSamplingPolicy(samplingPeriodUs, maxReportLatencyUs),
+                handler,
+                new SensorChangedListenerFactory()
+        );
+    }
+
+    /**
+     * Create a {@link Flowable} that notifies subscribers of changes in several {@link Sensor}s at once.
+     * <p>
+     * A single {@link SensorEventListener} is registered for every type and its events are emitted directly, without
+     * a merge, tagged by {@link SensorEvent#sensor}. Use a {@link SensorEventRouter} to dispatch them to per-type
+     * sinks. Emits {@link SensorNotFoundException} if any type is missing. As with {@link #observeSensor(int, int)},
+     * only the latest event is kept while downstream is not requesting, whatever its type.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    types               the {@link Sensor} types to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs  maximum time in microseconds that events can be delayed before being reported
+     * @return   A {@link Flowable} that notifies subscribers of changes in the given {@link Sensor}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorEvent> observeAll(
+            @NonNull final int[] types,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs
+    ) {
+        final SensorTypeTable table = new SensorTypeTable(types);
+        return Flowable.create(new FlowableOnSubscribe<SensorEvent>() {
+            @Override
+            public void subscribe(final FlowableEmitter<SensorEvent> emitter) {
+                final Sensor[] sensors = new Sensor[table.size()];
+                for (final int type : types) {
+                    final Sensor sensor = getDefaultSensor(type);
+                    if (sensor == null) {
+                        emitter.onError(new SensorNotFoundException(type));
+                        return;
+                    }
+                    sensors[table.indexOf(type)] = sensor;
+                }
+                final SensorEventListener sensorEventListener =
+                        traced(new SensorChangedListenerFactory().newInstance(emitter), UNKNOWN_SENSOR_TYPE);
+                emitter.setDisposable(new Disposable() {
+                    boolean disposed = false;
+
+                    @Override
+                    public void dispose() {
+                        unregisterListener(sensorEventListener, UNKNOWN_SENSOR_TYPE);
+                        disposed = true;
+                    }
+
+                    @Override
+                    public boolean isDisposed() {
+                        return disposed;
+                    }
+                });
+                for (final Sensor sensor : sensors) {
+                    if (!registerListener(sensorEventListener, sensor, samplingPeriodUs, maxReportLatencyUs, null)) {
+                        emitter.onError(new SensorListenerException(sensor));
+                        return;
+                    }
+                }
+            }
+        }, BackpressureStrategy.LATEST);
+    }
+
+    /**
+     * Create a {@link Flowable} of samples of a given {@link Sensor}, computed in software when the device has no
+     * hardware sensor of that type.
+     * <p>
+     * {@link Sensor#TYPE_GRAVITY}, {@link Sensor#TYPE_LINEAR_ACCELERATION} and {@link Sensor#TYPE_ROTATION_VECTOR}
+     * fall back to virtual sensors derived from the accelerometer and magnetometer. Virtual streams share their raw
+     * registrations and a single background thread, on which their samples are delivered, and their samples report
+     * {@link SensorSample#isVirtual()}. Other missing types emit {@link SensorNotFoundException}.
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @return   A {@link Flowable} of hardware or virtual samples of a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorSample> observeSensorOrVirtual(final int type, final int samplingPeriodUs) {
+        return Flowable.defer(new Callable<Publisher<SensorSample>>() {
+            @Override
+            public Publisher<SensorSample> call() {
+                if (getDefaultSensor(type) == null && VirtualSensors.isSupported(type)) {
+                    return virtualSensors.observe(type, samplingPeriodUs);
+                }
+                return observeSensor(type, samplingPeriodUs).map(SensorSample.COPY);
+            }
+        });
+    }
+
+    /**
+     * Create a {@link Flowable} that delivers at most one coalesced sample of a given {@link Sensor} per display
+     * frame.
+     * <p>
+     * Sensor events are received on a dedicated {@link HandlerThread} that lives exactly as long as the listener
+     * registration and are coalesced by a {@link FrameCoalescer} driven by a {@link ChoreographerFrameClock}. Samples
+     * are emitted on the thread this method is called from, which must be the main thread.
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    mode                either {@link FrameCoalescer#LATEST} or {@link FrameCoalescer#MEAN}
+     * @return   A {@link Flowable} that delivers at most one sample of a given {@link Sensor} per frame.
+     * @since    0.9.0
+     */
+    @NonNull
+    @MainThread
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    public Flowable<SensorSample> observeSensorPerFrame(final int type, final int samplingPeriodUs, final int mode) {
+        return observeSensorPerFrame(
+                type,
+                samplingPeriodUs,
+                new FrameCoalescer(new ChoreographerFrameClock(), mode),
+                new HandlerThreadLease("RxSensorManager-" + type)
+        );
+    }
+
+    @NonNull
+    Flowable<SensorSample> observeSensorPerFrame(
+            final int type,
+            final int samplingPeriodUs,
+            @NonNull final FrameCoalescer frameCoalescer,
+            @NonNull final HandlerLease handlerLease
+    ) {
+        return createSensorEventFlowable(
+                type,
+                null,
+                new FixedSamplingPolicy(samplingPeriodUs, 0),
+                null,
+                handlerLease,
+                new SensorChangedListenerFactory()
+        ).compose(frameCoalescer);
+    }
+
+    /**
+     * Create a {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}, delivering events on
+     * a leased {@link Handler} that is released after the listener has been unregistered.
+     */
+    @NonNull
+    Flowable<SensorEvent> observeSensor(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            @NonNull final HandlerLease handlerLease
+    ) {
+        return createSensorEventFlowable(
+                type,
+                null,
+                new FixedSamplingPolicy(samplingPeriodUs, maxReportLatencyUs),
+                null,
+                handlerLease,
+                new SensorChangedListenerFactory()
+        );
+    }
+
+    /**
+     * Create a demand-driven {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}.
+     * <p>
+     * The underlying listener is unregistered once downstream demand has been zero for at least
+     * <code>idleTimeoutUs</code>, and registered again as soon as downstream requests more events. Idle time is
+     * measured on {@link SensorEvent#timestamp}, so a sensor that stops reporting is never considered idle.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs  maximum time in microseconds that events can be delayed before being reported
+     * @param    idleTimeoutUs       time in microseconds without downstream demand before the listener is paused
+     * @return   A {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorEvent> observeSensorOnDemand(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            final int idleTimeoutUs
+    ) {
+        return createDemandDrivenSensorEventFlowable(
+                type,
+                samplingPeriodUs,
+                maxReportLatencyUs,
+                idleTimeoutUs,
+                new SensorChangedListenerFactory()
+        );
+    }
+
+    /**
+     * Create a resilient {@link Flowable} of samples of a given {@link Sensor} that survives registration failures and
+     * sensor disconnections.
+     * <p>
+     * When the sensor is missing, its registration fails or, where dynamic sensor discovery is supported, it
+     * disconnects, a single {@link SensorSample#gap(int, long)} marker is emitted and registration is retried after a
+     * backoff that doubles from <code>initialBackoffMs</code> up to <code>maxBackoffMs</code>, and resets once samples
+     * flow again. Where dynamic sensor discovery is supported, a newly connected dynamic sensor of the same type is
+     * bound immediately and retries also consider already connected dynamic sensors. Other errors are still emitted.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs    the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs  maximum time in microseconds that events can be delayed before being reported
+     * @param    initialBackoffMs    the delay before the first retry in milliseconds
+     * @param    maxBackoffMs        the longest delay between retries in milliseconds
+     * @return   A {@link Flowable} of samples and gap markers of a given {@link Sensor}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorSample> observeSensorResilient(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            final long initialBackoffMs,
+            final long maxBackoffMs
+    ) {
+        return observeSensorResilient(
+                type,
+                samplingPeriodUs,
+                maxReportLatencyUs,
+                initialBackoffMs,
+                maxBackoffMs,
+                Schedulers.computation()
+        );
+    }
+
+    @NonNull
+    Flowable<SensorSample> observeSensorResilient(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            final long initialBackoffMs,
+            final long maxBackoffMs,
+            @NonNull final Scheduler scheduler
+    ) {
+        if (initialBackoffMs <= 0 || maxBackoffMs < initialBackoffMs) {
+            throw new IllegalArgumentException("Invalid backoff: " + initialBackoffMs + ", " + maxBackoffMs);
+        }
+        return Flowable.defer(new Callable<Publisher<SensorSample>>() {
+            @Override
+            public Publisher<SensorSample> call() {
+                return new ResilientRegistration(
+                        type,
+                        new FixedSamplingPolicy(samplingPeriodUs, maxReportLatencyUs),
+                        initialBackoffMs,
+                        maxBackoffMs,
+                        scheduler
+                ).samples();
+            }
+        });
+    }
+
     /**
      * Create a {@link Flowable} that notifies subscribers of a change in the accuracy of a given {@link Sensor}.
      * <p>
@@ -158,7 +531,7 @@ public class RxSensorManager {
         return Single.create(new SingleOnSubscribe<TriggerEvent>() {
             @Override
             public void subscribe(final SingleEmitter<TriggerEvent> emitter) {
-                final Sensor sensor = sensorManager.getDefaultSensor(type);
+                final Sensor sensor = getDefaultSensor(type);
                 if (sensor == null) {
                     emitter.onError(new SensorNotFoundException(type));
                     return;
@@ -192,6 +565,121 @@ public class RxSensorManager {
         });
     }
 
+    /**
+     * Create a {@link Flowable} that notifies subscribers of a change in a given {@link Sensor}, but only while the
+     * device is moving.
+     * <p>
+     * While the device is idle only the low-power {@link Sensor#TYPE_SIGNIFICANT_MOTION} trigger sensor is armed.
+     * When it fires, the listener for <code>type</code> is registered at the requested rate. Once every axis of that
+     * stream has stayed within <code>stillnessThreshold</code> for <code>stillnessTimeoutUs</code>, the listener is
+     * unregistered and the trigger is armed again, within the same subscription.
+     * <p>
+     * <code>maxReportLatencyUs</code> is the maximum time in microseconds that events can be delayed before being
+     * reported. <b>Works for API level >= KITKAT ONLY.</b>
+     *
+     * @param    type  the {@link Sensor} type to request updates for
+     * @param    samplingPeriodUs     the desired delay between two consecutive events in microseconds
+     * @param    maxReportLatencyUs   maximum time in microseconds that events can be delayed before being reported
+     * @param    stillnessThreshold   the largest per-axis change still considered stationary
+     * @param    stillnessTimeoutUs   how long the stream must stay stationary before the device is considered idle
+     * @return   A {@link Flowable} that notifies subscribers of a change in a given {@link Sensor} while moving.
+     * @since    0.9.0
+     */
+    @NonNull
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public Flowable<SensorEvent> observeSensorWhileMoving(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            final float stillnessThreshold,
+            final int stillnessTimeoutUs
+    ) {
+        return observeTrigger(Sensor.TYPE_SIGNIFICANT_MOTION)
+                .flatMapPublisher(new Function<TriggerEvent, Publisher<SensorEvent>>() {
+                    @Override
+                    public Publisher<SensorEvent> apply(final TriggerEvent triggerEvent) {
+                        return observeSensor(type, samplingPeriodUs, maxReportLatencyUs)
+                                .takeUntil(new StillnessDetector(stillnessThreshold, stillnessTimeoutUs * 1000L));
+                    }
+                })
+                .repeat();
+    }
+
+    /**
+     * Create a {@link Flowable} of pedometry {@link StepReading}s: steps since subscription, cadence over the last
+     * <code>cadenceWindowUs</code> and a coarse activity class.
+     * <p>
+     * Steps are counted from {@link Sensor#TYPE_STEP_COUNTER} on API level >= KITKAT, relative to the first total it
+     * reports. Without a hardware step counter, steps are detected from {@link Sensor#TYPE_ACCELEROMETER} peaks by
+     * an allocation-free detector running inside the listener, and readings report {@link StepReading#isDetected()}.
+     * Either way only changes are emitted: a reading per counted step, and a reading with zero cadence once a full
+     * cadence window passes without steps. Emits {@link SensorNotFoundException} if neither sensor is present.
+     *
+     * @param    cadenceWindowUs  the window in microseconds over which cadence is measured
+     * @return   A {@link Flowable} of {@link StepReading}s, emitted on change.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<StepReading> observeSteps(final int cadenceWindowUs) {
+        return observeSteps(cadenceWindowUs, Schedulers.computation());
+    }
+
+    @NonNull
+    Flowable<StepReading> observeSteps(final int cadenceWindowUs, @NonNull final Scheduler scheduler) {
+        if (cadenceWindowUs <= 0) {
+            throw new IllegalArgumentException("cadenceWindowUs must be positive: " + cadenceWindowUs);
+        }
+        final long cadenceWindowNs = cadenceWindowUs * 1000L;
+        return Flowable.defer(new Callable<Publisher<StepReading>>() {
+            @Override
+            public Publisher<StepReading> call() {
+                final Sensor stepCounter = Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT
+                        ? getDefaultSensor(Sensor.TYPE_STEP_COUNTER)
+                        : null;
+                final Flowable<StepReading> readings;
+                if (stepCounter != null) {
+                    readings = createSensorEventFlowable(
+                            Sensor.TYPE_STEP_COUNTER,
+                            stepCounter,
+                            new FixedSamplingPolicy(SensorManager.SENSOR_DELAY_NORMAL, 0),
+                            null,
+                            new StepListenerFactory(cadenceWindowNs, false)
+                    );
+                } else {
+                    readings = createSensorEventFlowable(
+                            Sensor.TYPE_ACCELEROMETER,
+                            SensorManager.SENSOR_DELAY_GAME,
+                            0,
+                            new StepListenerFactory(cadenceWindowNs, true)
+                    );
+                }
+                return readings.switchMap(new Function<StepReading, Publisher<StepReading>>() {
+                    @Override
+                    public Publisher<StepReading> apply(final StepReading reading) {
+                        if (reading.cadence() == 0) {
+                            return Flowable.just(reading);
+                        }
+                        return Flowable.just(reading).concatWith(Flowable.timer(
+                                cadenceWindowUs,
+                                TimeUnit.MICROSECONDS,
+                                scheduler
+                        ).map(new Function<Long, StepReading>() {
+                            @Override
+                            public StepReading apply(final Long ignored) {
+                                return new StepReading(
+                                        reading.steps(),
+                                        0f,
+                                        reading.timestamp() + cadenceWindowNs,
+                                        reading.isDetected()
+                                );
+                            }
+                        }));
+                    }
+                });
+            }
+        });
+    }
+
     /**
      * Create an {@link Observable} that notifies subscribers of dynamic sensor connections.
      * <p>
@@ -222,6 +710,11 @@ public class RxSensorManager {
         return createDynamicSensorObservable(new DynamicSensorDisconnectedCallbackFactory());
     }
 
+    @TargetApi(Build.VERSION_CODES.N)
+    private boolean isDynamicSensorDiscoverySupported() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && sensorManager.isDynamicSensorDiscoverySupported();
+    }
+
     @NonNull
     @TargetApi(Build.VERSION_CODES.N)
     private Observable<Sensor> createDynamicSensorObservable(@NonNull final DynamicSensorCallbackFactory factory) {
@@ -263,33 +756,69 @@ public class RxSensorManager {
             final int samplingPeriodUs,
             final int maxReportLatencyUs,
             @NonNull final SensorEventListenerFactory<T> factory
+    ) {
+        return createSensorEventFlowable(
+                type,
+                new FixedSamplingPolicy(samplingPeriodUs, maxReportLatencyUs),
+                null,
+                factory
+        );
+    }
+
+    @NonNull
+    private <T> Flowable<T> createSensorEventFlowable(
+            final int type,
+            @NonNull final SamplingPolicy samplingPolicy,
+            @Nullable final Handler handler,
+            @NonNull final SensorEventListenerFactory<T> factory
+    ) {
+        return createSensorEventFlowable(type, null, samplingPolicy, handler, factory);
+    }
+
+    @NonNull
+    private <T> Flowable<T> createSensorEventFlowable(
+            final int type,
+            @Nullable final Sensor boundSensor,
+            @NonNull final SamplingPolicy samplingPolicy,
+            @Nullable final Handler handler,
+            @NonNull final SensorEventListenerFactory<T> factory
+    ) {
+        return createSensorEventFlowable(type, boundSensor, samplingPolicy, handler, null, factory);
+    }
+
+    /**
+     * The core registration. With a {@link HandlerLease}, events are delivered on the leased {@link Handler}, which
+     * is acquired before the listener is registered and released only after it has been unregistered.
+     */
+    @NonNull
+    private <T> Flowable<T> createSensorEventFlowable(
+            final int type,
+            @Nullable final Sensor boundSensor,
+            @NonNull final SamplingPolicy samplingPolicy,
+            @Nullable final Handler handler,
+            @Nullable final HandlerLease handlerLease,
+            @NonNull final SensorEventListenerFactory<T> factory
     ) {
         return Flowable.create(new FlowableOnSubscribe<T>() {
             @Override
-            @TargetApi(Build.VERSION_CODES.KITKAT)
             public void subscribe(final FlowableEmitter<T> emitter) {
-                final Sensor sensor = sensorManager.getDefaultSensor(type);
+                final Sensor sensor = boundSensor != null ? boundSensor : getDefaultSensor(type);
                 if (sensor == null) {
                     emitter.onError(new SensorNotFoundException(type));
                     return;
                 }
-                final SensorEventListener sensorEventListener = factory.newInstance(emitter);
-                final boolean sensorEnabled;
-                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-                    sensorEnabled = sensorManager.registerListener(
-                            sensorEventListener,
-                            sensor,
-                            samplingPeriodUs,
-                            maxReportLatencyUs
-                    );
-                } else {
-                    sensorEnabled = sensorManager.registerListener(
-                            sensorEventListener,
-                            sensor,
-                            samplingPeriodUs
-                    );
-                }
+                final SensorEventListener sensorEventListener = traced(factory.newInstance(emitter), sensor.getType());
+                final boolean sensorEnabled = registerListener(
+                        sensorEventListener,
+                        sensor,
+                        samplingPolicy.samplingPeriodUs(sensor),
+                        samplingPolicy.maxReportLatencyUs(sensor),
+                        handlerLease != null ? handlerLease.acquire() : handler
+                );
                 if (!sensorEnabled) {
+                    if (handlerLease != null) {
+                        handlerLease.release();
+                    }
                     emitter.onError(new SensorListenerException(sensor));
                     return;
                 }
@@ -298,7 +827,10 @@ public class RxSensorManager {
 
                     @Override
                     public void dispose() {
-                        sensorManager.unregisterListener(sensorEventListener);
+                        unregisterListener(sensorEventListener, sensor.getType());
+                        if (handlerLease != null) {
+                            handlerLease.release();
+                        }
                         disposed = true;
                     }
 
@@ -311,11 +843,513 @@ public class RxSensorManager {
         }, BackpressureStrategy.LATEST);
     }
 
+    @NonNull
+    private <T> Flowable<T> createDemandDrivenSensorEventFlowable(
+            final int type,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            final int idleTimeoutUs,
+            @NonNull final SensorEventListenerFactory<T> factory
+    ) {
+        return Flowable.defer(new Callable<Publisher<T>>() {
+            @Override
+            public Publisher<T> call() {
+                final DemandDrivenRegistration<T> registration = new DemandDrivenRegistration<T>(
+                        type,
+                        samplingPeriodUs,
+                        maxReportLatencyUs,
+                        idleTimeoutUs,
+                        factory
+                );
+                return Flowable.create(registration, BackpressureStrategy.LATEST)
+                        .doOnRequest(registration);
+            }
+        });
+    }
+
+    @Nullable
+    private Sensor getDefaultSensor(final int type) {
+        if (tracer == null) {
+            return sensorManager.getDefaultSensor(type);
+        }
+        final long token = tracer.beginSection(SensorTracer.GET_DEFAULT_SENSOR, type);
+        try {
+            return sensorManager.getDefaultSensor(type);
+        } finally {
+            if (token != SensorTracer.NOT_TRACED) {
+                tracer.endSection(SensorTracer.GET_DEFAULT_SENSOR, type, token);
+            }
+        }
+    }
+
+    private void unregisterListener(@NonNull final SensorEventListener sensorEventListener, final int type) {
+        if (tracer == null) {
+            sensorManager.unregisterListener(sensorEventListener);
+            return;
+        }
+        final long token = tracer.beginSection(SensorTracer.UNREGISTER_LISTENER, type);
+        try {
+            sensorManager.unregisterListener(sensorEventListener);
+        } finally {
+            if (token != SensorTracer.NOT_TRACED) {
+                tracer.endSection(SensorTracer.UNREGISTER_LISTENER, type, token);
+            }
+        }
+    }
+
+    /**
+     * Wrap a listener so that its events are traced. Its event counter is reported under <code>sensorType</code>,
+     * which is {@link #UNKNOWN_SENSOR_TYPE} for listeners registered for several types.
+     */
+    @NonNull
+    private SensorEventListener traced(@NonNull final SensorEventListener sensorEventListener, final int sensorType) {
+        return tracer == null
+                ? sensorEventListener
+                : new TracedSensorEventListener(sensorEventListener, tracer, sensorType);
+    }
+
+    private boolean registerListener(
+            @NonNull final SensorEventListener sensorEventListener,
+            @NonNull final Sensor sensor,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            @Nullable final Handler handler
+    ) {
+        if (tracer == null) {
+            return registerListenerUntraced(sensorEventListener, sensor, samplingPeriodUs, maxReportLatencyUs, handler);
+        }
+        final int type = sensor.getType();
+        final long token = tracer.beginSection(SensorTracer.REGISTER_LISTENER, type);
+        try {
+            return registerListenerUntraced(sensorEventListener, sensor, samplingPeriodUs, maxReportLatencyUs, handler);
+        } finally {
+            if (token != SensorTracer.NOT_TRACED) {
+                tracer.endSection(SensorTracer.REGISTER_LISTENER, type, token);
+            }
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private boolean registerListenerUntraced(
+            @NonNull final SensorEventListener sensorEventListener,
+            @NonNull final Sensor sensor,
+            final int samplingPeriodUs,
+            final int maxReportLatencyUs,
+            @Nullable final Handler handler
+    ) {
+        if (handler != null) {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+                return sensorManager.registerListener(
+                        sensorEventListener,
+                        sensor,
+                        samplingPeriodUs,
+                        maxReportLatencyUs,
+                        handler
+                );
+            } else {
+                return sensorManager.registerListener(
+                        sensorEventListener,
+                        sensor,
+                        samplingPeriodUs,
+                        handler
+                );
+            }
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
+            return sensorManager.registerListener(
+                    sensorEventListener,
+                    sensor,
+                    samplingPeriodUs,
+                    maxReportLatencyUs
+            );
+        } else {
+            return sensorManager.registerListener(
+                    sensorEventListener,
+                    sensor,
+                    samplingPeriodUs
+            );
+        }
+    }
+
+    /**
+     * Keeps a {@link SensorEventListener} registered only while downstream demand exists.
+     * <p>
+     * Requests arrive through {@link #accept(long)} on whatever thread downstream requests from, while idle
+     * detection runs on the sensor thread. Transitions between the two are guarded by <code>this</code>; the
+     * per-event path only takes the lock when an idle period starts or expires.
+     */
+    private final class DemandDrivenRegistration<T>
+            implements FlowableOnSubscribe<T>, LongConsumer, SensorEventListener {
+        private final int type;
+        private final int samplingPeriodUs;
+        private final int maxReportLatencyUs;
+        private final long idleTimeoutNs;
+        @NonNull
+        private final SensorEventListenerFactory<T> factory;
+
+        private FlowableEmitter<T> emitter;
+        private SensorEventListener delegate;
+        private Sensor sensor;
+        private boolean registered;
+        private boolean disposed;
+        private boolean requestedSinceIdle;
+        private long idleSinceNs = -1;
+
+        DemandDrivenRegistration(
+                final int type,
+                final int samplingPeriodUs,
+                final int maxReportLatencyUs,
+                final int idleTimeoutUs,
+                @NonNull final SensorEventListenerFactory<T> factory
+        ) {
+            this.type = type;
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+            this.idleTimeoutNs = idleTimeoutUs * 1000L;
+            this.factory = factory;
+        }
+
+        @Override
+        public void subscribe(final FlowableEmitter<T> emitter) {
+            final Sensor sensor = getDefaultSensor(type);
+            if (sensor == null) {
+                emitter.onError(new SensorNotFoundException(type));
+                return;
+            }
+            synchronized (this) {
+                this.emitter = emitter;
+                this.delegate = traced(factory.newInstance(emitter), sensor.getType());
+                this.sensor = sensor;
+                if (!register()) {
+                    return;
+                }
+            }
+            emitter.setDisposable(new Disposable() {
+                @Override
+                public void dispose() {
+                    synchronized (DemandDrivenRegistration.this) {
+                        unregister();
+                        disposed = true;
+                    }
+                }
+
+                @Override
+                public boolean isDisposed() {
+                    synchronized (DemandDrivenRegistration.this) {
+                        return disposed;
+                    }
+                }
+            });
+        }
+
+        @Override
+        public void accept(final long n) {
+            synchronized (this) {
+                requestedSinceIdle = true;
+                // Requests issued before subscribe() ran are covered by the initial registration.
+                if (sensor == null || disposed) {
+                    return;
+                }
+                register();
+            }
+        }
+
+        @Override
+        public void onSensorChanged(@NonNull SensorEvent sensorEvent) {
+            if (emitter.requested() > 0) {
+                idleSinceNs = -1;
+            } else if (idleSinceNs < 0) {
+                synchronized (this) {
+                    requestedSinceIdle = false;
+                    idleSinceNs = sensorEvent.timestamp;
+                }
+            } else if (sensorEvent.timestamp - idleSinceNs >= idleTimeoutNs) {
+                synchronized (this) {
+                    idleSinceNs = -1;
+                    if (!requestedSinceIdle) {
+                        unregister();
+                    }
+                }
+            }
+            delegate.onSensorChanged(sensorEvent);
+        }
+
+        @Override
+        public void onAccuracyChanged(@NonNull Sensor sensor, int accuracy) {
+            delegate.onAccuracyChanged(sensor, accuracy);
+        }
+
+        private boolean register() {
+            if (registered) {
+                return true;
+            }
+            registered = registerListener(this, sensor, samplingPeriodUs, maxReportLatencyUs, null);
+            if (!registered) {
+                emitter.onError(new SensorListenerException(sensor));
+            }
+            return registered;
+        }
+
+        private void unregister() {
+            if (registered) {
+                unregisterListener(this, type);
+                registered = false;
+            }
+        }
+    }
+
+    /**
+     * Per-subscription state of {@link #observeSensorResilient(int, int, int, long, long)}.
+     */
+    private final class ResilientRegistration {
+        private final int type;
+        @NonNull
+        private final SamplingPolicy samplingPolicy;
+        private final long initialBackoffMs;
+        private final long maxBackoffMs;
+        @NonNull
+        private final Scheduler scheduler;
+        @NonNull
+        private final AtomicReference<Sensor> replacement = new AtomicReference<Sensor>();
+        private volatile int failures;
+        private volatile boolean inGap;
+        private volatile long lastTimestamp;
+
+        ResilientRegistration(
+                final int type,
+                @NonNull final SamplingPolicy samplingPolicy,
+                final long initialBackoffMs,
+                final long maxBackoffMs,
+                @NonNull final Scheduler scheduler
+        ) {
+            this.type = type;
+            this.samplingPolicy = samplingPolicy;
+            this.initialBackoffMs = initialBackoffMs;
+            this.maxBackoffMs = maxBackoffMs;
+            this.scheduler = scheduler;
+        }
+
+        @NonNull
+        Flowable<SensorSample> samples() {
+            return attempt().repeatWhen(new Function<Flowable<Object>, Publisher<?>>() {
+                @Override
+                public Publisher<?> apply(final Flowable<Object> attempts) {
+                    return attempts.concatMap(new Function<Object, Publisher<Object>>() {
+                        @Override
+                        public Publisher<Object> apply(final Object ignored) {
+                            return Flowable.<Object>merge(
+                                    Flowable.timer(nextBackoffMs(), TimeUnit.MILLISECONDS, scheduler),
+                                    replacements()
+                            ).take(1);
+                        }
+                    });
+                }
+            });
+        }
+
+        @NonNull
+        private Flowable<SensorSample> attempt() {
+            return Flowable.defer(new Callable<Publisher<SensorEvent>>() {
+                @Override
+                public Publisher<SensorEvent> call() {
+                    final Sensor replacementSensor = replacement.getAndSet(null);
+                    final Sensor sensor = replacementSensor != null
+                            ? replacementSensor
+                            : findSensor();
+                    if (sensor == null) {
+                        return Flowable.error(new SensorNotFoundException(type));
+                    }
+                    final Flowable<SensorEvent> events = createSensorEventFlowable(
+                            type,
+                            sensor,
+                            samplingPolicy,
+                            null,
+                            new SensorChangedListenerFactory()
+                    );
+                    if (!isDynamicSensorDiscoverySupported()) {
+                        return events;
+                    }
+                    return events.takeUntil(disconnections(sensor));
+                }
+            }).map(new Function<SensorEvent, SensorSample>() {
+                @Override
+                public SensorSample apply(final SensorEvent sensorEvent) {
+                    failures = 0;
+                    inGap = false;
+                    lastTimestamp = sensorEvent.timestamp;
+                    return SensorSample.copyOf(sensorEvent);
+                }
+            }).onErrorResumeNext(new Function<Throwable, Publisher<SensorSample>>() {
+                @Override
+                public Publisher<SensorSample> apply(final Throwable throwable) {
+                    if (throwable instanceof SensorNotFoundException
+                            || throwable instanceof SensorListenerException) {
+                        return Flowable.empty();
+                    }
+                    return Flowable.error(throwable);
+                }
+            }).concatWith(Flowable.defer(new Callable<Publisher<SensorSample>>() {
+                @Override
+                public Publisher<SensorSample> call() {
+                    if (inGap) {
+                        return Flowable.empty();
+                    }
+                    inGap = true;
+                    return Flowable.just(SensorSample.gap(type, lastTimestamp));
+                }
+            }));
+        }
+
+        private long nextBackoffMs() {
+            long backoffMs = initialBackoffMs;
+            for (int i = 0; i < failures && backoffMs < maxBackoffMs; ++i) {
+                backoffMs *= 2;
+            }
+            ++failures;
+            return Math.min(backoffMs, maxBackoffMs);
+        }
+
+        /**
+         * Look up the default {@link Sensor} of the type, falling back to a dynamic one, which
+         * {@link SensorManager#getDefaultSensor(int)} never returns. This finds dynamic sensors that connected while
+         * no backoff was pending.
+         */
+        @Nullable
+        @TargetApi(Build.VERSION_CODES.N)
+        private Sensor findSensor() {
+            final Sensor sensor = getDefaultSensor(type);
+            if (sensor != null || !isDynamicSensorDiscoverySupported()) {
+                return sensor;
+            }
+            final List<Sensor> dynamicSensors = sensorManager.getDynamicSensorList(type);
+            return dynamicSensors == null || dynamicSensors.isEmpty() ? null : dynamicSensors.get(0);
+        }
+
+        @NonNull
+        private Flowable<Object> replacements() {
+            if (!isDynamicSensorDiscoverySupported()) {
+                return Flowable.never();
+            }
+            return observeDynamicSensorConnections()
+                    .toFlowable(BackpressureStrategy.LATEST)
+                    .filter(new Predicate<Sensor>() {
+                        @Override
+                        public boolean test(final Sensor sensor) {
+                            return sensor.getType() == type;
+                        }
+                    })
+                    .map(new Function<Sensor, Object>() {
+                        @Override
+                        public Object apply(final Sensor sensor) {
+                            replacement.set(sensor);
+                            return sensor;
+                        }
+                    });
+        }
+
+        @NonNull
+        @TargetApi(Build.VERSION_CODES.N)
+        private Flowable<Sensor> disconnections(@NonNull final Sensor sensor) {
+            return observeDynamicSensorDisconnections()
+                    .toFlowable(BackpressureStrategy.LATEST)
+                    .filter(new Predicate<Sensor>() {
+                        @Override
+                        public boolean test(final Sensor disconnected) {
+                            return disconnected.equals(sensor);
+                        }
+                    });
+        }
+    }
+
+    private interface SamplingPolicy {
+        int samplingPeriodUs(@NonNull Sensor sensor);
+
+        int maxReportLatencyUs(@NonNull Sensor sensor);
+    }
+
+    private static class FixedSamplingPolicy implements SamplingPolicy {
+        private final int samplingPeriodUs;
+        private final int maxReportLatencyUs;
+
+        FixedSamplingPolicy(final int samplingPeriodUs, final int maxReportLatencyUs) {
+            this.samplingPeriodUs = samplingPeriodUs;
+            this.maxReportLatencyUs = maxReportLatencyUs;
+        }
+
+        @Override
+        public int samplingPeriodUs(@NonNull Sensor sensor) {
+            return samplingPeriodUs;
+        }
+
+        @Override
+        public int maxReportLatencyUs(@NonNull Sensor sensor) {
+            return maxReportLatencyUs;
+        }
+    }
+
+    private static class BudgetedSamplingPolicy implements SamplingPolicy {
+        @NonNull
+        private final LatencyBudget latencyBudget;
+
+        BudgetedSamplingPolicy(@NonNull final LatencyBudget latencyBudget) {
+            this.latencyBudget = latencyBudget;
+        }
+
+        @Override
+        public int samplingPeriodUs(@NonNull Sensor sensor) {
+            return latencyBudget.samplingPeriodUs(sensor);
+        }
+
+        @Override
+        public int maxReportLatencyUs(@NonNull Sensor sensor) {
+            return latencyBudget.maxReportLatencyUs(sensor);
+        }
+    }
+
     private interface SensorEventListenerFactory<T> {
         @NonNull
         SensorEventListener newInstance(@NonNull FlowableEmitter<T> emitter);
     }
 
+    private static class TracedSensorEventListener implements SensorEventListener {
+        @NonNull
+        private final SensorEventListener delegate;
+        @NonNull
+        private final SensorTracer tracer;
+        private final int counterType;
+        private long events;
+
+        TracedSensorEventListener(
+                @NonNull final SensorEventListener delegate,
+                @NonNull final SensorTracer tracer,
+                final int counterType
+        ) {
+            this.delegate = delegate;
+            this.tracer = tracer;
+            this.counterType = counterType;
+        }
+
+        @Override
+        public void onSensorChanged(@NonNull SensorEvent sensorEvent) {
+            final int type = sensorEvent.sensor.getType();
+            ++events;
+            final long token = tracer.beginSection(SensorTracer.ON_SENSOR_CHANGED, type);
+            try {
+                delegate.onSensorChanged(sensorEvent);
+            } finally {
+                if (token != SensorTracer.NOT_TRACED) {
+                    tracer.endSection(SensorTracer.ON_SENSOR_CHANGED, type, token);
+                    tracer.counter(SensorTracer.ON_SENSOR_CHANGED, counterType, events);
+                }
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(@NonNull Sensor sensor, int accuracy) {
+            delegate.onAccuracyChanged(sensor, accuracy);
+        }
+    }
+
     private static class SensorChangedListenerFactory implements SensorEventListenerFactory<SensorEvent> {
         @NonNull
         @Override
@@ -343,6 +1377,101 @@ public class RxSensorManager {
         }
     }
 
+    private static class DeadbandListenerFactory implements SensorEventListenerFactory<SensorEvent> {
+        @NonNull
+        private final Deadband deadband;
+
+        DeadbandListenerFactory(@NonNull final Deadband deadband) {
+            this.deadband = deadband;
+        }
+
+        @NonNull
+        @Override
+        public SensorEventListener newInstance(@NonNull final FlowableEmitter<SensorEvent> emitter) {
+            return new DeadbandListener(emitter, deadband.newGate());
+        }
+
+        private static class DeadbandListener implements SensorEventListener {
+            @NonNull
+            FlowableEmitter<SensorEvent> emitter;
+            @NonNull
+            Deadband.Gate gate;
+
+            DeadbandListener(@NonNull final FlowableEmitter<SensorEvent> emitter, @NonNull final Deadband.Gate gate) {
+                this.emitter = emitter;
+                this.gate = gate;
+            }
+
+            @Override
+            public void onSensorChanged(@NonNull SensorEvent sensorEvent) {
+                if (gate.test(sensorEvent.timestamp, sensorEvent.values)) {
+                    emitter.onNext(sensorEvent);
+                }
+            }
+
+            @Override
+            public void onAccuracyChanged(@NonNull Sensor sensor, int accuracy) {
+                gate.reset();
+            }
+        }
+    }
+
+    private static class StepListenerFactory implements SensorEventListenerFactory<StepReading> {
+        private final long cadenceWindowNs;
+        private final boolean detected;
+
+        StepListenerFactory(final long cadenceWindowNs, final boolean detected) {
+            this.cadenceWindowNs = cadenceWindowNs;
+            this.detected = detected;
+        }
+
+        @NonNull
+        @Override
+        public SensorEventListener newInstance(@NonNull final FlowableEmitter<StepReading> emitter) {
+            return new StepListener(emitter, new StepTracker(cadenceWindowNs, detected), detected);
+        }
+
+        private static class StepListener implements SensorEventListener {
+            @NonNull
+            FlowableEmitter<StepReading> emitter;
+            @NonNull
+            StepTracker tracker;
+            @Nullable
+            StepDetector detector;
+
+            StepListener(
+                    @NonNull final FlowableEmitter<StepReading> emitter,
+                    @NonNull final StepTracker tracker,
+                    final boolean detected
+            ) {
+                this.emitter = emitter;
+                this.tracker = tracker;
+                this.detector = detected ? new StepDetector() : null;
+            }
+
+            @Override
+            public void onSensorChanged(@NonNull SensorEvent sensorEvent) {
+                final float[] values = sensorEvent.values;
+                if (detector == null) {
+                    final StepReading reading = tracker.onTotal(sensorEvent.timestamp, (long) values[0]);
+                    if (reading != null) {
+                        emitter.onNext(reading);
+                    }
+                    return;
+                }
+                tracker.begin(sensorEvent.timestamp);
+                if (detector.update(sensorEvent.timestamp, values[0], values[1], values[2])) {
+                    emitter.onNext(tracker.onStep(sensorEvent.timestamp));
+                }
+            }
+
+            @Override
+            public void onAccuracyChanged(@NonNull Sensor sensor, int accuracy) {
+                // noop
+            }
+        }
+    }
+
     private static class AccuracyChangedListenerFactory implements SensorEventListenerFactory<SensorAccuracyEvent> {
         @NonNull
         @Override
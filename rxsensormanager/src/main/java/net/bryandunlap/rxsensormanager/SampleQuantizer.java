@@ -0,0 +1,494 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Function;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * SampleQuantizer converts sensor values to 8-bit or 16-bit fixed-point codes.
+ * <p>
+ * {@link #forSensor(Sensor, int)} picks the smallest step that covers {@link Sensor#getMaximumRange()} with the
+ * available codes, but never a step finer than {@link Sensor#getResolution()}, since the hardware cannot resolve
+ * it anyway. Sensors that report no usable maximum range, as some HALs and virtual sensors do, are assumed to
+ * cover {@link #DEFAULT_MAXIMUM_RANGE}. For values within <code>[-maxValue(), maxValue()]</code> the
+ * reconstruction error is at most {@link #maxError()}, which is half a step; values outside that range saturate.
+ * <p>
+ * Each {@link QuantizedSample} is still an object with its own timestamp and code array, so per-sample quantization
+ * saves little memory. {@link #batches(int, int)} packs windows of samples into {@link QuantizedBatch}es that store
+ * the step once and the codes in one flat array, where 16-bit codes take half the memory of 32-bit floats and 8-bit
+ * codes a quarter.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SampleQuantizer {
+    public static final int BITS_8 = 8;
+    public static final int BITS_16 = 16;
+    /**
+     * The range assumed by {@link #forSensor(Sensor, int)} for sensors that report no positive maximum range.
+     *
+     * @since    0.9.0
+     */
+    public static final float DEFAULT_MAXIMUM_RANGE = 1000f;
+
+    private final int bits;
+    private final float step;
+    private final int maxCode;
+    private final float inverseStep;
+
+    /**
+     * Public constructor.
+     *
+     * @param    bits  the code width, either {@link #BITS_8} or {@link #BITS_16}
+     * @param    step  the value of one code unit
+     * @since    0.9.0
+     */
+    public SampleQuantizer(final int bits, final float step) {
+        if (bits != BITS_8 && bits != BITS_16) {
+            throw new IllegalArgumentException("bits must be 8 or 16: " + bits);
+        }
+        if (!(step > 0) || Float.isInfinite(step)) {
+            throw new IllegalArgumentException("step must be positive and finite: " + step);
+        }
+        this.bits = bits;
+        this.step = step;
+        this.maxCode = maxCode(bits);
+        this.inverseStep = 1f / step;
+    }
+
+    /**
+     * Create a {@link SampleQuantizer} whose step is derived from the metadata of a {@link Sensor}.
+     *
+     * @param    sensor  the {@link Sensor} whose range and resolution define the step
+     * @param    bits    the code width, either {@link #BITS_8} or {@link #BITS_16}
+     * @return   A {@link SampleQuantizer} suited to <code>sensor</code>.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static SampleQuantizer forSensor(@NonNull final Sensor sensor, final int bits) {
+        float range = sensor.getMaximumRange();
+        if (!(range > 0) || Float.isInfinite(range)) {
+            range = DEFAULT_MAXIMUM_RANGE;
+        }
+        final float rangeStep = range / maxCode(bits);
+        final float resolution = sensor.getResolution();
+        return new SampleQuantizer(
+                bits,
+                resolution > rangeStep && !Float.isInfinite(resolution) ? resolution : rangeStep
+        );
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that quantizes {@link SensorEvent}s, deriving a {@link SampleQuantizer}
+     * from the metadata of each distinct sensor type it sees.
+     *
+     * @param    bits  the code width, either {@link #BITS_8} or {@link #BITS_16}
+     * @return   A {@link FlowableTransformer} that quantizes {@link SensorEvent}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<SensorEvent, QuantizedSample> encoder(final int bits) {
+        maxCode(bits);
+        return new FlowableTransformer<SensorEvent, QuantizedSample>() {
+            @Override
+            public Publisher<QuantizedSample> apply(final Flowable<SensorEvent> upstream) {
+                return Flowable.defer(new Callable<Publisher<QuantizedSample>>() {
+                    @Override
+                    public Publisher<QuantizedSample> call() {
+                        return upstream.map(new PerSensorEncoder(bits));
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that quantizes {@link SensorEvent}s with this quantizer.
+     *
+     * @return   A {@link FlowableTransformer} that quantizes {@link SensorEvent}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public FlowableTransformer<SensorEvent, QuantizedSample> encoder() {
+        return new FlowableTransformer<SensorEvent, QuantizedSample>() {
+            @Override
+            public Publisher<QuantizedSample> apply(final Flowable<SensorEvent> upstream) {
+                return upstream.map(new Function<SensorEvent, QuantizedSample>() {
+                    @Override
+                    public QuantizedSample apply(final SensorEvent sensorEvent) {
+                        return quantize(sensorEvent);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that reconstructs {@link SensorSample}s from {@link QuantizedSample}s.
+     *
+     * @return   A {@link FlowableTransformer} that reconstructs {@link SensorSample}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<QuantizedSample, SensorSample> decoder() {
+        return new FlowableTransformer<QuantizedSample, SensorSample>() {
+            @Override
+            public Publisher<SensorSample> apply(final Flowable<QuantizedSample> upstream) {
+                return upstream.map(new Function<QuantizedSample, SensorSample>() {
+                    @Override
+                    public SensorSample apply(final QuantizedSample sample) {
+                        return sample.toSensorSample();
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that packs windows of <code>windowSize</code> {@link SensorEvent}s of each
+     * sensor type into {@link QuantizedBatch}es, deriving a {@link SampleQuantizer} from the metadata of each
+     * distinct sensor type it sees. Partial windows are emitted when the upstream completes.
+     *
+     * @param    bits        the code width, either {@link #BITS_8} or {@link #BITS_16}
+     * @param    windowSize  the number of samples per batch
+     * @return   A {@link FlowableTransformer} that packs {@link SensorEvent}s into {@link QuantizedBatch}es.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<SensorEvent, QuantizedBatch> batches(final int bits, final int windowSize) {
+        maxCode(bits);
+        return batches(null, bits, windowSize);
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that packs windows of <code>windowSize</code> {@link SensorEvent}s of each
+     * sensor type into {@link QuantizedBatch}es with this quantizer. Partial windows are emitted when the upstream
+     * completes.
+     *
+     * @param    windowSize  the number of samples per batch
+     * @return   A {@link FlowableTransformer} that packs {@link SensorEvent}s into {@link QuantizedBatch}es.
+     * @since    0.9.0
+     */
+    @NonNull
+    public FlowableTransformer<SensorEvent, QuantizedBatch> batches(final int windowSize) {
+        return batches(this, bits, windowSize);
+    }
+
+    /**
+     * Create a {@link FlowableTransformer} that reconstructs {@link SensorSample}s from {@link QuantizedBatch}es.
+     *
+     * @return   A {@link FlowableTransformer} that reconstructs {@link SensorSample}s.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static FlowableTransformer<QuantizedBatch, SensorSample> batchDecoder() {
+        return new FlowableTransformer<QuantizedBatch, SensorSample>() {
+            @Override
+            public Publisher<SensorSample> apply(final Flowable<QuantizedBatch> upstream) {
+                return upstream.concatMapIterable(new Function<QuantizedBatch, Iterable<SensorSample>>() {
+                    @Override
+                    public Iterable<SensorSample> apply(final QuantizedBatch batch) {
+                        return batch.toSensorSamples();
+                    }
+                });
+            }
+        };
+    }
+
+    @NonNull
+    private static FlowableTransformer<SensorEvent, QuantizedBatch> batches(
+            @Nullable final SampleQuantizer quantizer,
+            final int bits,
+            final int windowSize
+    ) {
+        if (windowSize <= 0) {
+            throw new IllegalArgumentException("windowSize must be positive: " + windowSize);
+        }
+        return new FlowableTransformer<SensorEvent, QuantizedBatch>() {
+            @Override
+            public Publisher<QuantizedBatch> apply(final Flowable<SensorEvent> upstream) {
+                return Flowable.defer(new Callable<Publisher<QuantizedBatch>>() {
+                    @Override
+                    public Publisher<QuantizedBatch> call() {
+                        final BatchPacker packer = new BatchPacker(quantizer, bits, windowSize);
+                        return upstream.concatMapIterable(packer).concatWith(Flowable.defer(
+                                new Callable<Publisher<QuantizedBatch>>() {
+                                    @Override
+                                    public Publisher<QuantizedBatch> call() {
+                                        return Flowable.fromIterable(packer.flush());
+                                    }
+                                }
+                        ));
+                    }
+                });
+            }
+        };
+    }
+
+    public int bits() {
+        return bits;
+    }
+
+    public float step() {
+        return step;
+    }
+
+    /**
+     * @return   The largest magnitude that can be represented without saturating.
+     * @since    0.9.0
+     */
+    public float maxValue() {
+        return maxCode * step;
+    }
+
+    /**
+     * @return   The largest reconstruction error for values within <code>[-maxValue(), maxValue()]</code>.
+     * @since    0.9.0
+     */
+    public float maxError() {
+        return step / 2;
+    }
+
+    /**
+     * Quantize a single value.
+     *
+     * @param    value  the value to quantize
+     * @return   The signed fixed-point code of <code>value</code>, saturated to the code range.
+     * @since    0.9.0
+     */
+    public int quantize(final float value) {
+        final int code = Math.round(value * inverseStep);
+        return Math.max(-maxCode, Math.min(maxCode, code));
+    }
+
+    @NonNull
+    public QuantizedSample quantize(@NonNull final SensorEvent sensorEvent) {
+        return quantize(sensorEvent.sensor.getType(), sensorEvent.timestamp, sensorEvent.accuracy, sensorEvent.values);
+    }
+
+    @NonNull
+    public QuantizedSample quantize(@NonNull final SensorSample sample) {
+        return quantize(sample.type(), sample.timestamp(), sample.accuracy(), sample.values());
+    }
+
+    @NonNull
+    private QuantizedSample quantize(
+            final int type,
+            final long timestamp,
+            final int accuracy,
+            @NonNull final float[] values
+    ) {
+        final byte[] codes = new byte[bits == BITS_16 ? values.length << 1 : values.length];
+        for (int i = 0; i < values.length; ++i) {
+            final int code = quantize(values[i]);
+            if (bits == BITS_16) {
+                codes[i << 1] = (byte) (code >> 8);
+                codes[(i << 1) + 1] = (byte) code;
+            } else {
+                codes[i] = (byte) code;
+            }
+        }
+        return new QuantizedSample(type, timestamp, accuracy, bits, step, codes);
+    }
+
+    private static int maxCode(final int bits) {
+        if (bits == BITS_16) {
+            return Short.MAX_VALUE;
+        } else if (bits == BITS_8) {
+            return Byte.MAX_VALUE;
+        }
+        throw new IllegalArgumentException("bits must be 8 or 16: " + bits);
+    }
+
+    private static final class PerSensorEncoder implements Function<SensorEvent, QuantizedSample> {
+        private final int bits;
+        private int[] types = new int[4];
+        private SampleQuantizer[] quantizers = new SampleQuantizer[4];
+        private int count;
+
+        PerSensorEncoder(final int bits) {
+            this.bits = bits;
+        }
+
+        @Override
+        public QuantizedSample apply(final SensorEvent sensorEvent) {
+            return quantizerFor(sensorEvent.sensor).quantize(sensorEvent);
+        }
+
+        @NonNull
+        private SampleQuantizer quantizerFor(@NonNull final Sensor sensor) {
+            final int type = sensor.getType();
+            for (int i = 0; i < count; ++i) {
+                if (types[i] == type) {
+                    return quantizers[i];
+                }
+            }
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                quantizers = Arrays.copyOf(quantizers, count * 2);
+            }
+            types[count] = type;
+            quantizers[count] = forSensor(sensor, bits);
+            return quantizers[count++];
+        }
+    }
+
+    /**
+     * Per-subscription state packing each sensor type into its own window.
+     */
+    private static final class BatchPacker implements Function<SensorEvent, Iterable<QuantizedBatch>> {
+        @Nullable
+        private final SampleQuantizer quantizer;
+        private final int bits;
+        private final int windowSize;
+        private int[] types = new int[4];
+        private Window[] windows = new Window[4];
+        private int count;
+
+        BatchPacker(@Nullable final SampleQuantizer quantizer, final int bits, final int windowSize) {
+            this.quantizer = quantizer;
+            this.bits = bits;
+            this.windowSize = windowSize;
+        }
+
+        @Override
+        public Iterable<QuantizedBatch> apply(final SensorEvent sensorEvent) {
+            final Window window = windowFor(sensorEvent.sensor);
+            final float[] values = sensorEvent.values;
+            QuantizedBatch partial = null;
+            if (window.count > 0 && values.length != window.axes) {
+                partial = window.drain();
+            }
+            window.add(sensorEvent.timestamp, sensorEvent.accuracy, values);
+            final QuantizedBatch full = window.count == windowSize ? window.drain() : null;
+            if (partial == null) {
+                return full == null
+                        ? Collections.<QuantizedBatch>emptyList()
+                        : Collections.singletonList(full);
+            }
+            return full == null ? Collections.singletonList(partial) : Arrays.asList(partial, full);
+        }
+
+        @NonNull
+        List<QuantizedBatch> flush() {
+            final List<QuantizedBatch> batches = new ArrayList<QuantizedBatch>(count);
+            for (int i = 0; i < count; ++i) {
+                if (windows[i].count > 0) {
+                    batches.add(windows[i].drain());
+                }
+            }
+            return batches;
+        }
+
+        @NonNull
+        private Window windowFor(@NonNull final Sensor sensor) {
+            final int type = sensor.getType();
+            for (int i = 0; i < count; ++i) {
+                if (types[i] == type) {
+                    return windows[i];
+                }
+            }
+            if (count == types.length) {
+                types = Arrays.copyOf(types, count * 2);
+                windows = Arrays.copyOf(windows, count * 2);
+            }
+            types[count] = type;
+            windows[count] = new Window(type, quantizer != null ? quantizer : forSensor(sensor, bits), windowSize);
+            return windows[count++];
+        }
+    }
+
+    /**
+     * The samples of one sensor type collected since the last batch.
+     */
+    private static final class Window {
+        private final int type;
+        @NonNull
+        private final SampleQuantizer quantizer;
+        private final int windowSize;
+        private int axes;
+        private int count;
+        private long[] timestamps;
+        private byte[] accuracies;
+        private byte[] codes8;
+        private short[] codes16;
+
+        Window(final int type, @NonNull final SampleQuantizer quantizer, final int windowSize) {
+            this.type = type;
+            this.quantizer = quantizer;
+            this.windowSize = windowSize;
+        }
+
+        void add(final long timestamp, final int accuracy, @NonNull final float[] values) {
+            if (count == 0) {
+                axes = values.length;
+                timestamps = new long[windowSize];
+                accuracies = new byte[windowSize];
+                if (quantizer.bits == BITS_16) {
+                    codes16 = new short[windowSize * axes];
+                } else {
+                    codes8 = new byte[windowSize * axes];
+                }
+            }
+            timestamps[count] = timestamp;
+            accuracies[count] = (byte) accuracy;
+            final int offset = count * axes;
+            for (int axis = 0; axis < axes; ++axis) {
+                final int code = quantizer.quantize(values[axis]);
+                if (codes16 != null) {
+                    codes16[offset + axis] = (short) code;
+                } else {
+                    codes8[offset + axis] = (byte) code;
+                }
+            }
+            ++count;
+        }
+
+        @NonNull
+        QuantizedBatch drain() {
+            final boolean trim = count < windowSize;
+            final QuantizedBatch batch = new QuantizedBatch(
+                    type,
+                    quantizer.bits,
+                    quantizer.step,
+                    axes,
+                    count,
+                    trim ? Arrays.copyOf(timestamps, count) : timestamps,
+                    trim ? Arrays.copyOf(accuracies, count) : accuracies,
+                    codes8 != null && trim ? Arrays.copyOf(codes8, count * axes) : codes8,
+                    codes16 != null && trim ? Arrays.copyOf(codes16, count * axes) : codes16
+            );
+            count = 0;
+            timestamps = null;
+            accuracies = null;
+            codes8 = null;
+            codes16 = null;
+            return batch;
+        }
+    }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * SamplingSensorTracer keeps the most recent sampled {@link SensorTracer} sections in memory, for example to
+ * report sensor overhead from production builds.
+ * <p>
+ * One in every <code>sampleInterval</code> sections of each trace point is timed with {@link System#nanoTime()}
+ * and stored in a fixed-capacity ring of primitive arrays, overwriting the oldest section. The latest counter value
+ * of each trace point and sensor type is kept as well. Recording does not allocate once every sensor type has been
+ * counted.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SamplingSensorTracer implements SensorTracer {
+    private final int sampleInterval;
+    private final long[] reached = new long[POINT_COUNT];
+
+    private final int[] points;
+    private final int[] sensorTypes;
+    private final long[] startNanos;
+    private final long[] durationNanos;
+    private int next;
+    private int size;
+
+    private int[] counterKeys = new int[8];
+    private long[] counterValues = new long[8];
+    private int counterCount;
+
+    /**
+     * Public constructor.
+     *
+     * @param    sampleInterval  time one in every <code>sampleInterval</code> sections of each trace point
+     * @param    capacity        the number of sections kept
+     * @since    0.9.0
+     */
+    public SamplingSensorTracer(final int sampleInterval, final int capacity) {
+        if (sampleInterval <= 0) {
+            throw new IllegalArgumentException("sampleInterval must be positive: " + sampleInterval);
+        }
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.sampleInterval = sampleInterval;
+        this.points = new int[capacity];
+        this.sensorTypes = new int[capacity];
+        this.startNanos = new long[capacity];
+        this.durationNanos = new long[capacity];
+    }
+
+    @Override
+    public long beginSection(final int point, final int sensorType) {
+        synchronized (reached) {
+            if (reached[point]++ % sampleInterval != 0) {
+                return NOT_TRACED;
+            }
+        }
+        return System.nanoTime();
+    }
+
+    @Override
+    public void endSection(final int point, final int sensorType, final long token) {
+        final long duration = System.nanoTime() - token;
+        synchronized (this) {
+            points[next] = point;
+            sensorTypes[next] = sensorType;
+            startNanos[next] = token;
+            durationNanos[next] = duration;
+            next = (next + 1) % points.length;
+            size = Math.min(size + 1, points.length);
+        }
+    }
+
+    @Override
+    public synchronized void counter(final int point, final int sensorType, final long value) {
+        final int key = counterKey(point, sensorType);
+        for (int i = 0; i < counterCount; ++i) {
+            if (counterKeys[i] == key) {
+                counterValues[i] = value;
+                return;
+            }
+        }
+        if (counterCount == counterKeys.length) {
+            counterKeys = Arrays.copyOf(counterKeys, counterCount * 2);
+            counterValues = Arrays.copyOf(counterValues, counterCount * 2);
+        }
+        counterKeys[counterCount] = key;
+        counterValues[counterCount++] = value;
+    }
+
+    /**
+     * @param    point       the trace point
+     * @param    sensorType  the {@link android.hardware.Sensor} type
+     * @return   The latest counter value of the trace point and sensor type, or 0 if none was reported.
+     * @since    0.9.0
+     */
+    public synchronized long counter(final int point, final int sensorType) {
+        final int key = counterKey(point, sensorType);
+        for (int i = 0; i < counterCount; ++i) {
+            if (counterKeys[i] == key) {
+                return counterValues[i];
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * @return   A copy of the retained sections, oldest first.
+     * @since    0.9.0
+     */
+    @NonNull
+    public synchronized List<Section> sections() {
+        final List<Section> sections = new ArrayList<Section>(size);
+        final int first = (next - size + points.length) % points.length;
+        for (int i = 0; i < size; ++i) {
+            final int index = (first + i) % points.length;
+            sections.add(new Section(points[index], sensorTypes[index], startNanos[index], durationNanos[index]));
+        }
+        return sections;
+    }
+
+    private static int counterKey(final int point, final int sensorType) {
+        return sensorType * POINT_COUNT + point;
+    }
+
+    /**
+     * A sampled section.
+     *
+     * @since    0.9.0
+     */
+    public static final class Section {
+        private final int point;
+        private final int sensorType;
+        private final long startNanos;
+        private final long durationNanos;
+
+        Section(final int point, final int sensorType, final long startNanos, final long durationNanos) {
+            this.point = point;
+            this.sensorType = sensorType;
+            this.startNanos = startNanos;
+            this.durationNanos = durationNanos;
+        }
+
+        public int point() {
+            return point;
+        }
+
+        public int sensorType() {
+            return sensorType;
+        }
+
+        public long startNanos() {
+            return startNanos;
+        }
+
+        public long durationNanos() {
+            return durationNanos;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * SensorCalibration holds per-axis correction parameters. A raw value is corrected as
+ * <code>(raw - offset) * scale</code>.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorCalibration {
+    @NonNull
+    private final float[] offsets;
+    @NonNull
+    private final float[] scales;
+    private final long samples;
+
+    SensorCalibration(@NonNull final float[] offsets, @NonNull final float[] scales, final long samples) {
+        this.offsets = offsets;
+        this.scales = scales;
+        this.samples = samples;
+    }
+
+    /**
+     * @return   A copy of the per-axis offsets, hard-iron offsets or gyroscope bias.
+     * @since    0.9.0
+     */
+    @NonNull
+    public float[] offsets() {
+        return offsets.clone();
+    }
+
+    /**
+     * @return   A copy of the per-axis scales, soft-iron scale factors or 1 for gyroscope bias.
+     * @since    0.9.0
+     */
+    @NonNull
+    public float[] scales() {
+        return scales.clone();
+    }
+
+    /**
+     * @return   The number of samples the estimate is based on.
+     * @since    0.9.0
+     */
+    public long samples() {
+        return samples;
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.Completable;
+import io.reactivex.CompletableEmitter;
+import io.reactivex.CompletableOnSubscribe;
+import io.reactivex.Flowable;
+import io.reactivex.Scheduler;
+import io.reactivex.subscribers.ResourceSubscriber;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+
+/**
+ * SensorEventExporter streams {@link SensorEvent}s to an {@link OutputStream} or a blocking
+ * {@link WritableByteChannel} using a compact, framed binary protocol.
+ * <p>
+ * All multi-byte fixed-width fields are big-endian; <i>varint</i> is unsigned LEB128 and <i>svarint</i> is a ZigZag
+ * encoded varint.
+ * <pre>
+ * stream  := magic:int32("RXSM") version:int8 quantizationStep:float32 frame*
+ * frame   := length:int32 record*
+ * record  := define | sample
+ * define  := 0x00 id:varint sensorType:svarint
+ * sample  := 0x01 id:varint timestampDelta:svarint accuracy:int8 count:varint value{count}
+ * value   := float32                  (quantizationStep == 0)
+ *          | round(v / step):svarint  (quantizationStep &gt; 0)
+ * </pre>
+ * A <code>define</code> record is written the first time a sensor type is seen and binds it to a small dictionary
+ * id. Timestamps are encoded as the delta from the previous sample with the same id, starting from zero.
+ * <p>
+ * Events are encoded on the thread that delivers them, so {@link SensorEvent} instances that are recycled by the
+ * framework never cross threads. Each frame holds <code>batchSize</code> events and is written from a small pool
+ * of reusable buffers on a {@link Scheduler.Worker}. Events are only requested from upstream while a buffer is
+ * free, so a slow sink applies backpressure all the way to the sensor {@link Flowable}.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorEventExporter {
+    static final int MAGIC = 0x5258534D;
+    static final int VERSION = 1;
+    static final int RECORD_DEFINE = 0;
+    static final int RECORD_SAMPLE = 1;
+    static final int MAX_VALUES = 16;
+
+    private static final int HEADER_BYTES = 4 + 1 + 4;
+    private static final int FRAME_LENGTH_BYTES = 4;
+    private static final int MAX_DEFINE_BYTES = 1 + 5 + VarInts.MAX_VARINT_BYTES;
+    private static final int MAX_SAMPLE_BYTES = 1 + 5 + VarInts.MAX_VARINT_BYTES + 1 + 5
+            + MAX_VALUES * VarInts.MAX_VARINT_BYTES;
+    private static final int POOL_SIZE = 4;
+
+    @NonNull
+    private final Sink sink;
+    private final boolean direct;
+    private final int batchSize;
+    private final float quantizationStep;
+
+    /**
+     * Create an exporter that writes to an {@link OutputStream}. The stream is flushed after every frame.
+     *
+     * @param    outputStream      the {@link OutputStream} to write frames to
+     * @param    batchSize         the number of events per frame
+     * @param    quantizationStep  the quantization step for values, or 0 to write raw 32-bit floats
+     * @since    0.9.0
+     */
+    public SensorEventExporter(
+            @NonNull final OutputStream outputStream,
+            final int batchSize,
+            final float quantizationStep
+    ) {
+        this(new OutputStreamSink(outputStream), false, batchSize, quantizationStep);
+    }
+
+    /**
+     * Create an exporter that writes to a blocking {@link WritableByteChannel}, such as a connected
+     * {@link java.nio.channels.SocketChannel}. Frames are assembled in direct buffers.
+     *
+     * @param    channel           the blocking {@link WritableByteChannel} to write frames to
+     * @param    batchSize         the number of events per frame
+     * @param    quantizationStep  the quantization step for values, or 0 to write raw 32-bit floats
+     * @since    0.9.0
+     */
+    public SensorEventExporter(
+            @NonNull final WritableByteChannel channel,
+            final int batchSize,
+            final float quantizationStep
+    ) {
+        this(new ChannelSink(channel), true, batchSize, quantizationStep);
+    }
+
+    private SensorEventExporter(
+            @NonNull final Sink sink,
+            final boolean direct,
+            final int batchSize,
+            final float quantizationStep
+    ) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        if (quantizationStep < 0) {
+            throw new IllegalArgumentException("quantizationStep must not be negative: " + quantizationStep);
+        }
+        this.sink = sink;
+        this.direct = direct;
+        this.batchSize = batchSize;
+        this.quantizationStep = quantizationStep;
+    }
+
+    /**
+     * Create a {@link Completable} that exports <code>events</code> while subscribed.
+     * <p>
+     * Every subscription writes a complete stream, starting with the stream header. The {@link Completable}
+     * completes once upstream completes and all pending frames have been written, and fails with the
+     * {@link IOException} of the first failed write.
+     *
+     * @param    events     the {@link SensorEvent}s to export, typically from {@link RxSensorManager}
+     * @param    scheduler  the {@link Scheduler} that performs the blocking writes
+     * @return   A {@link Completable} that exports <code>events</code> while subscribed.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Completable export(@NonNull final Flowable<SensorEvent> events, @NonNull final Scheduler scheduler) {
+        return Completable.create(new CompletableOnSubscribe() {
+            @Override
+            public void subscribe(final CompletableEmitter emitter) {
+                final ExportSubscriber subscriber = new ExportSubscriber(emitter, scheduler.createWorker());
+                emitter.setDisposable(subscriber);
+                events.subscribe(subscriber);
+            }
+        });
+    }
+
+    private final class ExportSubscriber extends ResourceSubscriber<SensorEvent> {
+        @NonNull
+        private final CompletableEmitter emitter;
+        @NonNull
+        private final Scheduler.Worker worker;
+        @NonNull
+        private final BufferPool pool;
+        private final double inverseStep;
+
+        private volatile ByteBuffer current;
+        private int frameStart;
+        private int pending;
+
+        private int[] types = new int[8];
+        private long[] lastTimestamps = new long[8];
+        private int sensorCount;
+
+        ExportSubscriber(@NonNull final CompletableEmitter emitter, @NonNull final Scheduler.Worker worker) {
+            this.emitter = emitter;
+            this.worker = worker;
+            this.pool = new BufferPool(
+                    HEADER_BYTES + FRAME_LENGTH_BYTES + batchSize * (MAX_DEFINE_BYTES + MAX_SAMPLE_BYTES),
+                    direct
+            );
+            this.inverseStep = quantizationStep > 0 ? 1.0 / quantizationStep : 0;
+        }
+
+        @Override
+        protected void onStart() {
+            add(worker);
+            final ByteBuffer buffer = pool.acquire();
+            buffer.putInt(MAGIC);
+            buffer.put((byte) VERSION);
+            buffer.putFloat(quantizationStep);
+            beginFrame(buffer);
+            request(batchSize);
+        }
+
+        @Override
+        public void onNext(@NonNull final SensorEvent sensorEvent) {
+            if (sensorEvent.values.length > MAX_VALUES) {
+                dispose();
+                emitter.onError(new IllegalArgumentException(
+                        "Sensor events are limited to " + MAX_VALUES + " values: " + sensorEvent.values.length
+                ));
+                return;
+            }
+            encode(current, sensorEvent);
+            if (++pending == batchSize) {
+                handOff();
+                final ByteBuffer buffer = pool.acquire();
+                // With no free buffer the request is issued once the writer returns one.
+                if (buffer != null) {
+                    beginFrame(buffer);
+                    request(batchSize);
+                }
+            }
+        }
+
+        @Override
+        public void onError(@NonNull final Throwable throwable) {
+            emitter.onError(throwable);
+        }
+
+        @Override
+        public void onComplete() {
+            if (current != null) {
+                handOff();
+            }
+            worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    emitter.onComplete();
+                }
+            });
+        }
+
+        private void beginFrame(@NonNull final ByteBuffer buffer) {
+            frameStart = buffer.position();
+            buffer.position(frameStart + FRAME_LENGTH_BYTES);
+            current = buffer;
+        }
+
+        private void handOff() {
+            final ByteBuffer buffer = current;
+            current = null;
+            if (pending == 0) {
+                buffer.position(frameStart);
+            } else {
+                buffer.putInt(frameStart, buffer.position() - frameStart - FRAME_LENGTH_BYTES);
+            }
+            pending = 0;
+            buffer.flip();
+            if (!buffer.hasRemaining()) {
+                pool.release(buffer);
+                return;
+            }
+            worker.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    write(buffer);
+                }
+            });
+        }
+
+        private void write(@NonNull final ByteBuffer buffer) {
+            if (isDisposed()) {
+                return;
+            }
+            try {
+                sink.write(buffer);
+            } catch (IOException e) {
+                emitter.onError(e);
+                return;
+            }
+            buffer.clear();
+            if (pool.release(buffer) && !isDisposed()) {
+                beginFrame(pool.acquire());
+                request(batchSize);
+            }
+        }
+
+        private void encode(@NonNull final ByteBuffer buffer, @NonNull final SensorEvent sensorEvent) {
+            final int type = sensorEvent.sensor.getType();
+            int id = indexOf(type);
+            if (id < 0) {
+                id = define(buffer, type);
+            }
+            buffer.put((byte) RECORD_SAMPLE);
+            VarInts.putUnsigned(buffer, id);
+            VarInts.putSigned(buffer, sensorEvent.timestamp - lastTimestamps[id]);
+            lastTimestamps[id] = sensorEvent.timestamp;
+            buffer.put((byte) sensorEvent.accuracy);
+            final float[] values = sensorEvent.values;
+            VarInts.putUnsigned(buffer, values.length);
+            if (inverseStep > 0) {
+                for (final float value : values) {
+                    VarInts.putSigned(buffer, Math.round(value * inverseStep));
+                }
+            } else {
+                for (final float value : values) {
+                    buffer.putFloat(value);
+                }
+            }
+        }
+
+        private int indexOf(final int type) {
+            for (int i = 0; i < sensorCount; ++i) {
+                if (types[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int define(@NonNull final ByteBuffer buffer, final int type) {
+            if (sensorCount == types.length) {
+                types = Arrays.copyOf(types, sensorCount * 2);
+                lastTimestamps = Arrays.copyOf(lastTimestamps, sensorCount * 2);
+            }
+            final int id = sensorCount++;
+            types[id] = type;
+            lastTimestamps[id] = 0;
+            buffer.put((byte) RECORD_DEFINE);
+            VarInts.putUnsigned(buffer, id);
+            VarInts.putSigned(buffer, type);
+            return id;
+        }
+    }
+
+    private static final class BufferPool {
+        @NonNull
+        private final ArrayDeque<ByteBuffer> free = new ArrayDeque<ByteBuffer>(POOL_SIZE);
+        private boolean starved;
+
+        BufferPool(final int capacity, final boolean direct) {
+            for (int i = 0; i < POOL_SIZE; ++i) {
+                free.add(direct ? ByteBuffer.allocateDirect(capacity) : ByteBuffer.allocate(capacity));
+            }
+        }
+
+        /**
+         * @return   A free buffer, or <code>null</code> if all buffers are in flight.
+         */
+        synchronized ByteBuffer acquire() {
+            final ByteBuffer buffer = free.poll();
+            starved = buffer == null;
+            return buffer;
+        }
+
+        /**
+         * @return   <code>true</code> if a caller was refused a buffer since the last successful acquire.
+         */
+        synchronized boolean release(@NonNull final ByteBuffer buffer) {
+            free.add(buffer);
+            final boolean wasStarved = starved;
+            starved = false;
+            return wasStarved;
+        }
+    }
+
+    private interface Sink {
+        void write(@NonNull ByteBuffer buffer) throws IOException;
+    }
+
+    private static final class OutputStreamSink implements Sink {
+        @NonNull
+        private final OutputStream outputStream;
+
+        OutputStreamSink(@NonNull final OutputStream outputStream) {
+            this.outputStream = outputStream;
+        }
+
+        @Override
+        public void write(@NonNull final ByteBuffer buffer) throws IOException {
+            outputStream.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            outputStream.flush();
+        }
+    }
+
+    private static final class ChannelSink implements Sink {
+        @NonNull
+        private final WritableByteChannel channel;
+
+        ChannelSink(@NonNull final WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(@NonNull final ByteBuffer buffer) throws IOException {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.functions.Consumer;
+
+/**
+ * SensorEventRouter dispatches a multiplexed stream, such as {@link RxSensorManager#observeAll(int[], int, int)},
+ * to one sink per sensor type.
+ * <p>
+ * Routing is a primitive table lookup on {@link android.hardware.Sensor#getType()} followed by a direct call, so
+ * events reach their sink on the delivering thread without per-type queues or merges. Events of types without a
+ * sink are ignored. Sinks must be set up before the router receives events.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorEventRouter implements Consumer<SensorEvent> {
+    @NonNull
+    private final SensorTypeTable table;
+    @NonNull
+    private final Consumer<? super SensorEvent>[] sinks;
+
+    /**
+     * Public constructor.
+     *
+     * @param    types  the {@link android.hardware.Sensor} types that can be routed
+     * @since    0.9.0
+     */
+    @SuppressWarnings("unchecked")
+    public SensorEventRouter(@NonNull final int[] types) {
+        this.table = new SensorTypeTable(types);
+        this.sinks = (Consumer<? super SensorEvent>[]) new Consumer<?>[table.size()];
+    }
+
+    /**
+     * Set the sink of a sensor type, replacing any previous one.
+     *
+     * @param    type  one of the {@link android.hardware.Sensor} types given to the constructor
+     * @param    sink  the {@link Consumer} that receives events of <code>type</code>
+     * @return   This {@link SensorEventRouter}.
+     * @since    0.9.0
+     */
+    @NonNull
+    public SensorEventRouter route(final int type, @NonNull final Consumer<? super SensorEvent> sink) {
+        final int index = table.indexOf(type);
+        if (index < 0) {
+            throw new IllegalArgumentException("Unknown sensor type: " + type);
+        }
+        sinks[index] = sink;
+        return this;
+    }
+
+    @Override
+    public void accept(@NonNull final SensorEvent sensorEvent) throws Exception {
+        final int index = table.indexOf(sensorEvent.sensor.getType());
+        if (index >= 0 && sinks[index] != null) {
+            sinks[index].accept(sensorEvent);
+        }
+    }
+}
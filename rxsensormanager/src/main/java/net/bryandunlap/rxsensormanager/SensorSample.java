@@ -0,0 +1,159 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.functions.Function;
+
+/**
+ * SensorSample is a detached copy of the data carried by a {@link SensorEvent}.
+ * <p>
+ * The framework recycles {@link SensorEvent} instances between callbacks, so events must be copied before they
+ * are handed to another thread or retained past <code>onNext</code>. The values array is owned by the sample and
+ * is exposed without copying.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorSample {
+    static final Function<SensorEvent, SensorSample> COPY = new Function<SensorEvent, SensorSample>() {
+        @Override
+        public SensorSample apply(final SensorEvent sensorEvent) {
+            return copyOf(sensorEvent);
+        }
+    };
+
+    private static final int FLAG_VIRTUAL = 1;
+    private static final int FLAG_GAP = 2;
+
+    private final int type;
+    private final long timestamp;
+    private final int accuracy;
+    @NonNull
+    private final float[] values;
+    private final int flags;
+
+    /**
+     * Public constructor.
+     *
+     * @param    type       the {@link android.hardware.Sensor} type that produced the sample
+     * @param    timestamp  the sample time in nanoseconds
+     * @param    accuracy   the accuracy of the sample
+     * @param    values     the sample values, retained without copying
+     * @since    0.9.0
+     */
+    public SensorSample(final int type, final long timestamp, final int accuracy, @NonNull final float[] values) {
+        this(type, timestamp, accuracy, values, false);
+    }
+
+    /**
+     * Public constructor.
+     *
+     * @param    type       the {@link android.hardware.Sensor} type that produced the sample
+     * @param    timestamp  the sample time in nanoseconds
+     * @param    accuracy   the accuracy of the sample
+     * @param    values     the sample values, retained without copying
+     * @param    virtual    whether the sample was computed in software rather than by a hardware sensor
+     * @since    0.9.0
+     */
+    public SensorSample(
+            final int type,
+            final long timestamp,
+            final int accuracy,
+            @NonNull final float[] values,
+            final boolean virtual
+    ) {
+        this(type, timestamp, accuracy, values, virtual ? FLAG_VIRTUAL : 0);
+    }
+
+    private SensorSample(
+            final int type,
+            final long timestamp,
+            final int accuracy,
+            @NonNull final float[] values,
+            final int flags
+    ) {
+        this.type = type;
+        this.timestamp = timestamp;
+        this.accuracy = accuracy;
+        this.values = values;
+        this.flags = flags;
+    }
+
+    /**
+     * Create a marker for a gap in a stream, carrying no values.
+     *
+     * @param    type       the {@link android.hardware.Sensor} type whose stream was interrupted
+     * @param    timestamp  the time of the last sample before the gap in nanoseconds, or 0 if there was none
+     * @return   A {@link SensorSample} for which {@link #isGap()} returns <code>true</code>.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static SensorSample gap(final int type, final long timestamp) {
+        return new SensorSample(type, timestamp, 0, new float[0], FLAG_GAP);
+    }
+
+    /**
+     * Copy the data of a {@link SensorEvent} into a new {@link SensorSample}.
+     *
+     * @param    sensorEvent  the {@link SensorEvent} to copy
+     * @return   A {@link SensorSample} holding a copy of the event data.
+     * @since    0.9.0
+     */
+    @NonNull
+    public static SensorSample copyOf(@NonNull final SensorEvent sensorEvent) {
+        return new SensorSample(
+                sensorEvent.sensor.getType(),
+                sensorEvent.timestamp,
+                sensorEvent.accuracy,
+                sensorEvent.values.clone()
+        );
+    }
+
+    public int type() {
+        return type;
+    }
+
+    public long timestamp() {
+        return timestamp;
+    }
+
+    public int accuracy() {
+        return accuracy;
+    }
+
+    @NonNull
+    public float[] values() {
+        return values;
+    }
+
+    /**
+     * @return   <code>true</code> if the sample was computed in software rather than by a hardware sensor.
+     * @since    0.9.0
+     */
+    public boolean isVirtual() {
+        return (flags & FLAG_VIRTUAL) != 0;
+    }
+
+    /**
+     * @return   <code>true</code> if the sample marks a gap in its stream rather than carrying data.
+     * @since    0.9.0
+     */
+    public boolean isGap() {
+        return (flags & FLAG_GAP) != 0;
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SensorSessionIndex is a sparse time index over a session recorded by {@link SensorEventExporter}.
+ * <p>
+ * Entries sit on frame boundaries, at most every <code>recordsPerEntry</code> samples or
+ * <code>intervalNs</code> of sample time. Each entry stores its file offset, the largest timestamp of any sample
+ * before it, the smallest timestamp of any sample from it onwards, and the timestamp bases needed to resume delta
+ * decoding there. Because both bounds are monotonic, a time range maps to a contiguous run of entries by binary
+ * search even when batched sensors interleave out of order. The index is stored beside the recording:
+ * <pre>
+ * index := magic:int32("RXSI") version:int8 quantizationStep:float32 endOffset:int64
+ *          typeCount:int32 sensorType:int32{typeCount} entryCount:int32 entry{entryCount}
+ * entry := offset:int64 maxBefore:int64 minAfter:int64 baseCount:int32 base:int64{baseCount}
+ * </pre>
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorSessionIndex {
+    static final int MAGIC = 0x52585349;
+    static final int VERSION = 1;
+
+    private static final int STREAM_HEADER_BYTES = 4 + 1 + 4;
+    private static final int FRAME_LENGTH_BYTES = 4;
+
+    final float quantizationStep;
+    final long endOffset;
+    @NonNull
+    final int[] types;
+    @NonNull
+    final long[] offsets;
+    @NonNull
+    final long[] maxBefore;
+    @NonNull
+    final long[] minAfter;
+    @NonNull
+    final long[][] bases;
+
+    SensorSessionIndex(
+            final float quantizationStep,
+            final long endOffset,
+            @NonNull final int[] types,
+            @NonNull final long[] offsets,
+            @NonNull final long[] maxBefore,
+            @NonNull final long[] minAfter,
+            @NonNull final long[][] bases
+    ) {
+        this.quantizationStep = quantizationStep;
+        this.endOffset = endOffset;
+        this.types = types;
+        this.offsets = offsets;
+        this.maxBefore = maxBefore;
+        this.minAfter = minAfter;
+        this.bases = bases;
+    }
+
+    /**
+     * Build an index by scanning a recorded session once. A trailing partial frame, as left by an interrupted
+     * recording, is excluded.
+     *
+     * @param    channel          the {@link FileChannel} of the recording
+     * @param    recordsPerEntry  the largest number of samples between entries
+     * @param    intervalNs       the largest span of sample time between entries in nanoseconds
+     * @return   The {@link SensorSessionIndex} of the recording.
+     * @throws   IOException  if the recording cannot be read or is not a recorded session
+     * @since    0.9.0
+     */
+    @NonNull
+    public static SensorSessionIndex build(
+            @NonNull final FileChannel channel,
+            final int recordsPerEntry,
+            final long intervalNs
+    ) throws IOException {
+        if (recordsPerEntry <= 0) {
+            throw new IllegalArgumentException("recordsPerEntry must be positive: " + recordsPerEntry);
+        }
+        final ByteBuffer header = ByteBuffer.allocate(STREAM_HEADER_BYTES);
+        readFully(channel, header, 0);
+        if (header.getInt() != SensorEventExporter.MAGIC || header.get() != SensorEventExporter.VERSION) {
+            throw new IOException("Not a recorded sensor session");
+        }
+        final float quantizationStep = header.getFloat();
+        final SessionRecordDecoder decoder = new SessionRecordDecoder(quantizationStep, new int[0], new long[0]);
+
+        final List<Long> offsets = new ArrayList<Long>();
+        final List<Long> maxBefore = new ArrayList<Long>();
+        final List<Long> segmentMin = new ArrayList<Long>();
+        final List<long[]> bases = new ArrayList<long[]>();
+        final ByteBuffer length = ByteBuffer.allocate(FRAME_LENGTH_BYTES);
+        ByteBuffer frame = ByteBuffer.allocate(0);
+        long position = STREAM_HEADER_BYTES;
+        long max = Long.MIN_VALUE;
+        long min = Long.MAX_VALUE;
+        long entryTimestamp = 0;
+        int records = 0;
+        final long size = channel.size();
+        while (position + FRAME_LENGTH_BYTES <= size) {
+            length.clear();
+            readFully(channel, length, position);
+            final int frameBytes = FRAME_LENGTH_BYTES + length.getInt(0);
+            if (position + frameBytes > size) {
+                break;
+            }
+            if (offsets.isEmpty() || records >= recordsPerEntry
+                    || (records > 0 && max - entryTimestamp >= intervalNs)) {
+                if (!offsets.isEmpty()) {
+                    segmentMin.add(min);
+                }
+                offsets.add(position);
+                maxBefore.add(max);
+                bases.add(decoder.lastTimestamps());
+                min = Long.MAX_VALUE;
+                records = 0;
+            }
+            if (frame.capacity() < frameBytes) {
+                frame = ByteBuffer.allocate(frameBytes);
+            }
+            frame.clear();
+            frame.limit(frameBytes);
+            readFully(channel, frame, position);
+            decoder.reset(frame);
+            while (decoder.next(frame, false)) {
+                if (records == 0) {
+                    entryTimestamp = decoder.timestamp;
+                }
+                max = Math.max(max, decoder.timestamp);
+                min = Math.min(min, decoder.timestamp);
+                ++records;
+            }
+            position += frameBytes;
+        }
+        segmentMin.add(min);
+
+        final int entryCount = offsets.size();
+        final long[] offsetArray = new long[entryCount];
+        final long[] maxBeforeArray = new long[entryCount];
+        final long[] minAfterArray = new long[entryCount];
+        long after = Long.MAX_VALUE;
+        for (int i = entryCount - 1; i >= 0; --i) {
+            offsetArray[i] = offsets.get(i);
+            maxBeforeArray[i] = maxBefore.get(i);
+            after = Math.min(after, segmentMin.get(i));
+            minAfterArray[i] = after;
+        }
+        return new SensorSessionIndex(
+                quantizationStep,
+                position,
+                decoder.types(),
+                offsetArray,
+                maxBeforeArray,
+                minAfterArray,
+                bases.toArray(new long[entryCount][])
+        );
+    }
+
+    /**
+     * Read an index written by {@link #writeTo(OutputStream)}.
+     *
+     * @param    inputStream  the {@link InputStream} to read from
+     * @return   The {@link SensorSessionIndex} read.
+     * @throws   IOException  if the index cannot be read or is malformed
+     * @since    0.9.0
+     */
+    @NonNull
+    public static SensorSessionIndex readFrom(@NonNull final InputStream inputStream) throws IOException {
+        final DataInputStream input = new DataInputStream(inputStream);
+        if (input.readInt() != MAGIC || input.readByte() != VERSION) {
+            throw new IOException("Not a sensor session index");
+        }
+        final float quantizationStep = input.readFloat();
+        final long endOffset = input.readLong();
+        final int[] types = new int[input.readInt()];
+        for (int i = 0; i < types.length; ++i) {
+            types[i] = input.readInt();
+        }
+        final int entryCount = input.readInt();
+        final long[] offsets = new long[entryCount];
+        final long[] maxBefore = new long[entryCount];
+        final long[] minAfter = new long[entryCount];
+        final long[][] bases = new long[entryCount][];
+        for (int i = 0; i < entryCount; ++i) {
+            offsets[i] = input.readLong();
+            maxBefore[i] = input.readLong();
+            minAfter[i] = input.readLong();
+            bases[i] = new long[input.readInt()];
+            for (int j = 0; j < bases[i].length; ++j) {
+                bases[i][j] = input.readLong();
+            }
+        }
+        return new SensorSessionIndex(quantizationStep, endOffset, types, offsets, maxBefore, minAfter, bases);
+    }
+
+    /**
+     * Write the index, typically to a file beside the recording. The stream is flushed but not closed.
+     *
+     * @param    outputStream  the {@link OutputStream} to write to
+     * @throws   IOException  if the index cannot be written
+     * @since    0.9.0
+     */
+    public void writeTo(@NonNull final OutputStream outputStream) throws IOException {
+        final DataOutputStream output = new DataOutputStream(outputStream);
+        output.writeInt(MAGIC);
+        output.writeByte(VERSION);
+        output.writeFloat(quantizationStep);
+        output.writeLong(endOffset);
+        output.writeInt(types.length);
+        for (final int type : types) {
+            output.writeInt(type);
+        }
+        output.writeInt(offsets.length);
+        for (int i = 0; i < offsets.length; ++i) {
+            output.writeLong(offsets[i]);
+            output.writeLong(maxBefore[i]);
+            output.writeLong(minAfter[i]);
+            output.writeInt(bases[i].length);
+            for (final long base : bases[i]) {
+                output.writeLong(base);
+            }
+        }
+        output.flush();
+    }
+
+    /**
+     * @return   The number of entries in the index.
+     * @since    0.9.0
+     */
+    public int size() {
+        return offsets.length;
+    }
+
+    /**
+     * @return   The first entry whose preceding samples are all earlier than <code>fromNs</code>.
+     */
+    int firstEntry(final long fromNs) {
+        int low = 0;
+        int high = offsets.length - 1;
+        while (low < high) {
+            final int mid = (low + high + 1) >>> 1;
+            if (maxBefore[mid] < fromNs) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return   The first entry whose following samples are all later than <code>toNs</code>, or the entry count.
+     */
+    int endEntry(final long toNs) {
+        int low = 0;
+        int high = offsets.length;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (minAfter[mid] > toNs) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return   The file offset at which entry <code>entry</code> ends.
+     */
+    long endOffset(final int entry) {
+        return entry + 1 < offsets.length ? offsets[entry + 1] : endOffset;
+    }
+
+    private static void readFully(
+            @NonNull final FileChannel channel,
+            @NonNull final ByteBuffer buffer,
+            long position
+    ) throws IOException {
+        while (buffer.hasRemaining()) {
+            final int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of recording");
+            }
+            position += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import io.reactivex.Emitter;
+import io.reactivex.Flowable;
+import io.reactivex.functions.BiConsumer;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.Callable;
+
+/**
+ * SensorSessionReader replays time ranges of a session recorded by {@link SensorEventExporter}.
+ * <p>
+ * A {@link SensorSessionIndex} narrows each range to the run of index entries that can overlap it, and only those
+ * entries are memory-mapped, one at a time as downstream requests samples. Samples are emitted in file order as
+ * {@link SensorSample}s, the detached form of live {@link android.hardware.SensorEvent}s, so the same analysis
+ * pipelines can consume recorded and live data.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SensorSessionReader {
+    @NonNull
+    private final FileChannel channel;
+    @NonNull
+    private final SensorSessionIndex index;
+
+    /**
+     * Public constructor.
+     *
+     * @param    channel  the {@link FileChannel} of the recording, owned by the caller
+     * @param    index    the {@link SensorSessionIndex} of the recording
+     * @since    0.9.0
+     */
+    public SensorSessionReader(@NonNull final FileChannel channel, @NonNull final SensorSessionIndex index) {
+        this.channel = channel;
+        this.index = index;
+    }
+
+    /**
+     * Create a {@link Flowable} of the recorded samples with timestamps in <code>[fromNs, toNs]</code>.
+     *
+     * @param    fromNs  the first timestamp to include in nanoseconds
+     * @param    toNs    the last timestamp to include in nanoseconds
+     * @return   A {@link Flowable} of the recorded {@link SensorSample}s in the range.
+     * @since    0.9.0
+     */
+    @NonNull
+    public Flowable<SensorSample> read(final long fromNs, final long toNs) {
+        return Flowable.generate(
+                new Callable<Cursor>() {
+                    @Override
+                    public Cursor call() {
+                        return new Cursor(fromNs, toNs);
+                    }
+                },
+                new BiConsumer<Cursor, Emitter<SensorSample>>() {
+                    @Override
+                    public void accept(final Cursor cursor, final Emitter<SensorSample> emitter) throws IOException {
+                        cursor.emitNext(emitter);
+                    }
+                }
+        );
+    }
+
+    private final class Cursor {
+        private final long fromNs;
+        private final long toNs;
+        private final int endEntry;
+        private int nextEntry;
+        private SessionRecordDecoder decoder;
+        private ByteBuffer buffer;
+
+        Cursor(final long fromNs, final long toNs) {
+            this.fromNs = fromNs;
+            this.toNs = toNs;
+            this.nextEntry = index.firstEntry(fromNs);
+            this.endEntry = index.endEntry(toNs);
+        }
+
+        void emitNext(@NonNull final Emitter<SensorSample> emitter) throws IOException {
+            while (true) {
+                if (buffer == null || !decoder.next(buffer, true)) {
+                    if (nextEntry >= endEntry) {
+                        emitter.onComplete();
+                        return;
+                    }
+                    map(nextEntry++);
+                    continue;
+                }
+                if (decoder.timestamp >= fromNs && decoder.timestamp <= toNs) {
+                    emitter.onNext(new SensorSample(
+                            decoder.type,
+                            decoder.timestamp,
+                            decoder.accuracy,
+                            decoder.values
+                    ));
+                    return;
+                }
+            }
+        }
+
+        private void map(final int entry) throws IOException {
+            if (decoder == null) {
+                decoder = new SessionRecordDecoder(index.quantizationStep, index.types, index.bases[entry]);
+            }
+            final long offset = index.offsets[entry];
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, offset, index.endOffset(entry) - offset);
+            decoder.reset(buffer);
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+/**
+ * SensorTracer receives timing sections and counters from the points where {@link RxSensorManager} does sensor
+ * work.
+ * <p>
+ * {@link #beginSection(int, int)} decides whether a section is sampled and returns an opaque token;
+ * {@link #endSection(int, int, long)} is only called, on the same thread, for tokens other than
+ * {@link #NOT_TRACED}. Implementations are called from sensor delivery threads and must be cheap and thread-safe.
+ * Without a tracer, {@link RxSensorManager} skips these calls entirely.
+ *
+ * @author    Bryan Dunlap
+ * @see       SystraceSensorTracer
+ * @see       SamplingSensorTracer
+ * @since     0.9.0
+ */
+public interface SensorTracer {
+    int REGISTER_LISTENER = 0;
+    int UNREGISTER_LISTENER = 1;
+    int GET_DEFAULT_SENSOR = 2;
+    int ON_SENSOR_CHANGED = 3;
+    int POINT_COUNT = 4;
+
+    /**
+     * The token of a section that was not sampled.
+     */
+    long NOT_TRACED = Long.MIN_VALUE;
+
+    /**
+     * Begin a section at a trace point.
+     *
+     * @param    point       the trace point, e.g. {@link #ON_SENSOR_CHANGED}
+     * @param    sensorType  the {@link android.hardware.Sensor} type involved, or -1 if several are
+     * @return   A token for {@link #endSection(int, int, long)}, or {@link #NOT_TRACED} to skip the section.
+     * @since    0.9.0
+     */
+    long beginSection(int point, int sensorType);
+
+    /**
+     * End a section begun by {@link #beginSection(int, int)}.
+     *
+     * @param    point       the trace point of the section
+     * @param    sensorType  the {@link android.hardware.Sensor} type of the section
+     * @param    token       the token returned when the section began
+     * @since    0.9.0
+     */
+    void endSection(int point, int sensorType, long token);
+
+    /**
+     * Report the running count of a trace point, sent with sampled sections.
+     *
+     * @param    point       the trace point being counted
+     * @param    sensorType  the {@link android.hardware.Sensor} type being counted, or -1 for a listener registered
+     *                       for several types
+     * @param    value       the number of times the point was reached
+     * @since    0.9.0
+     */
+    void counter(int point, int sensorType, long value);
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Maps sensor types to dense indices with open addressing over primitive arrays.
+ * <p>
+ * Lookups do not box or allocate. The table is built once and is safe to read from any thread afterwards.
+ */
+final class SensorTypeTable {
+    private static final int EMPTY = -1;
+
+    private final int[] keys;
+    private final int[] indices;
+    private final int mask;
+    private final int size;
+
+    /**
+     * Index the distinct types of <code>types</code> in order of first appearance.
+     */
+    SensorTypeTable(@NonNull final int[] types) {
+        int capacity = 4;
+        while (capacity < types.length * 2) {
+            capacity <<= 1;
+        }
+        keys = new int[capacity];
+        indices = new int[capacity];
+        mask = capacity - 1;
+        for (int i = 0; i < capacity; ++i) {
+            indices[i] = EMPTY;
+        }
+        int count = 0;
+        for (final int type : types) {
+            int slot = slotOf(type);
+            while (indices[slot] != EMPTY && keys[slot] != type) {
+                slot = (slot + 1) & mask;
+            }
+            if (indices[slot] == EMPTY) {
+                keys[slot] = type;
+                indices[slot] = count++;
+            }
+        }
+        size = count;
+    }
+
+    /**
+     * @return   The index of <code>type</code>, or -1 if it is not in the table.
+     */
+    int indexOf(final int type) {
+        int slot = slotOf(type);
+        while (indices[slot] != EMPTY) {
+            if (keys[slot] == type) {
+                return indices[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return EMPTY;
+    }
+
+    /**
+     * @return   The number of distinct types.
+     */
+    int size() {
+        return size;
+    }
+
+    private int slotOf(final int type) {
+        // Fibonacci hashing spreads the small, clustered sensor type constants.
+        return (type * 0x9E3779B9) >>> 16 & mask;
+    }
+}
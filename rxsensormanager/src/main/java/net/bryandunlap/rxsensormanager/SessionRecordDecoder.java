@@ -0,0 +1,121 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Decodes the frames and records written by {@link SensorEventExporter}, one sample at a time.
+ * <p>
+ * Buffers handed to {@link #reset(ByteBuffer)} must start at a frame boundary and end at one. After
+ * {@link #next(ByteBuffer, boolean)} returns <code>true</code>, the fields describe the decoded sample. Instances
+ * are not thread-safe.
+ */
+final class SessionRecordDecoder {
+    private final float quantizationStep;
+    private int[] types;
+    private long[] lastTimestamps;
+    private int idCount;
+    private int frameEnd;
+
+    int type;
+    long timestamp;
+    int accuracy;
+    float[] values;
+
+    SessionRecordDecoder(final float quantizationStep, @NonNull final int[] types, @NonNull final long[] bases) {
+        this.quantizationStep = quantizationStep;
+        this.types = Arrays.copyOf(types, Math.max(types.length, 8));
+        this.lastTimestamps = Arrays.copyOf(bases, this.types.length);
+        this.idCount = types.length;
+    }
+
+    /**
+     * Start decoding a new buffer positioned at a frame boundary.
+     */
+    void reset(@NonNull final ByteBuffer buffer) {
+        frameEnd = buffer.position();
+    }
+
+    /**
+     * Decode records until the next sample.
+     *
+     * @return   <code>false</code> once the buffer is exhausted.
+     */
+    boolean next(@NonNull final ByteBuffer buffer, final boolean readValues) {
+        while (true) {
+            if (buffer.position() == frameEnd) {
+                if (buffer.remaining() < 4) {
+                    return false;
+                }
+                final int length = buffer.getInt();
+                frameEnd = buffer.position() + length;
+                continue;
+            }
+            final int tag = buffer.get();
+            final int id = (int) VarInts.getUnsigned(buffer);
+            if (tag == SensorEventExporter.RECORD_DEFINE) {
+                define(id, (int) VarInts.getSigned(buffer));
+                continue;
+            }
+            if (tag != SensorEventExporter.RECORD_SAMPLE) {
+                throw new IllegalStateException("Unknown record: " + tag);
+            }
+            type = types[id];
+            timestamp = lastTimestamps[id] + VarInts.getSigned(buffer);
+            lastTimestamps[id] = timestamp;
+            accuracy = buffer.get();
+            final int count = (int) VarInts.getUnsigned(buffer);
+            values = readValues ? new float[count] : null;
+            for (int i = 0; i < count; ++i) {
+                final float value = quantizationStep > 0
+                        ? VarInts.getSigned(buffer) * quantizationStep
+                        : buffer.getFloat();
+                if (readValues) {
+                    values[i] = value;
+                }
+            }
+            return true;
+        }
+    }
+
+    /**
+     * @return   A copy of the dictionary of sensor types by id.
+     */
+    @NonNull
+    int[] types() {
+        return Arrays.copyOf(types, idCount);
+    }
+
+    /**
+     * @return   A copy of the last timestamp of every defined id.
+     */
+    @NonNull
+    long[] lastTimestamps() {
+        return Arrays.copyOf(lastTimestamps, idCount);
+    }
+
+    private void define(final int id, final int type) {
+        if (id >= types.length) {
+            types = Arrays.copyOf(types, Math.max(id + 1, types.length * 2));
+            lastTimestamps = Arrays.copyOf(lastTimestamps, types.length);
+        }
+        types[id] = type;
+        idCount = Math.max(idCount, id + 1);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.Scheduler;
+import io.reactivex.flowables.GroupedFlowable;
+import io.reactivex.functions.Function;
+import org.reactivestreams.Publisher;
+
+/**
+ * ShardedFeatureExtractor runs one feature pipeline per sensor type, spreading the pipelines across the workers of
+ * a {@link Scheduler}.
+ * <p>
+ * Events are copied into {@link SensorSample}s on the delivering thread, grouped by sensor type, and each group is
+ * moved onto its own {@link Scheduler.Worker}. With a fixed pool such as
+ * {@link io.reactivex.schedulers.Schedulers#computation()}, every sensor type is pinned to one pool thread, so
+ * each pipeline keeps its own state without locks and sees its samples in order. The outputs of all pipelines are
+ * merged back into a single {@link Flowable}; ordering across sensor types is not preserved.
+ *
+ * @param     <R>  the feature type produced by the pipelines
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class ShardedFeatureExtractor<R> implements FlowableTransformer<SensorEvent, R> {
+    @NonNull
+    private final PipelineFactory<R> factory;
+    @NonNull
+    private final Scheduler scheduler;
+    private final int bufferSize;
+
+    /**
+     * Public constructor.
+     *
+     * @param    factory     creates the feature pipeline for each sensor type
+     * @param    scheduler   the {@link Scheduler} whose workers run the pipelines
+     * @param    bufferSize  the number of samples buffered per sensor type ahead of its pipeline
+     * @since    0.9.0
+     */
+    public ShardedFeatureExtractor(
+            @NonNull final PipelineFactory<R> factory,
+            @NonNull final Scheduler scheduler,
+            final int bufferSize
+    ) {
+        this.factory = factory;
+        this.scheduler = scheduler;
+        this.bufferSize = bufferSize;
+    }
+
+    @Override
+    public Publisher<R> apply(final Flowable<SensorEvent> upstream) {
+        return upstream
+                .map(SensorSample.COPY)
+                .groupBy(new Function<SensorSample, Integer>() {
+                    @Override
+                    public Integer apply(final SensorSample sample) {
+                        return sample.type();
+                    }
+                })
+                .flatMap(new Function<GroupedFlowable<Integer, SensorSample>, Publisher<R>>() {
+                    @Override
+                    public Publisher<R> apply(final GroupedFlowable<Integer, SensorSample> shard) {
+                        // hide() stops the pipeline from fusing with the observeOn queue and being polled, and
+                        // so run, on whichever thread drains the merge.
+                        return shard.observeOn(scheduler, false, bufferSize)
+                                .hide()
+                                .compose(factory.newPipeline(shard.getKey()));
+                    }
+                }, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Creates the feature pipeline for a single sensor type.
+     * <p>
+     * A new pipeline is created for every sensor type seen on every subscription, and it is only ever invoked from
+     * the worker its shard runs on.
+     *
+     * @param    <R>  the feature type produced by the pipeline
+     * @since    0.9.0
+     */
+    public interface PipelineFactory<R> {
+        @NonNull
+        FlowableTransformer<SensorSample, R> newPipeline(int sensorType);
+    }
+}
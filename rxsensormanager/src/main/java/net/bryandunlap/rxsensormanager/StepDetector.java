@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+/**
+ * Detects steps as peaks in the magnitude of accelerometer samples.
+ * <p>
+ * Gravity is tracked by a slow low-pass of the magnitude and the remainder is smoothed by a fast one. A step is a
+ * rise of the smoothed remainder above {@link #RISE_THRESHOLD} after it has fallen below zero, at least
+ * {@link #MIN_STEP_INTERVAL_NS} after the previous step. Runs in constant time and space per sample without
+ * allocating. Instances are not thread-safe and hold per-stream state.
+ */
+final class StepDetector {
+    /**
+     * The rise above gravity in m/s<sup>2</sup> that marks a step.
+     */
+    static final float RISE_THRESHOLD = 1.2f;
+    /**
+     * The shortest interval between two steps, a cadence of 240 steps per minute.
+     */
+    static final long MIN_STEP_INTERVAL_NS = 250000000L;
+
+    private static final float GRAVITY_TIME_CONSTANT_S = 1f;
+    private static final float SMOOTHING_TIME_CONSTANT_S = 0.05f;
+    private static final float MAX_GAP_S = 1f;
+    private static final float NANOS_PER_SECOND = 1e9f;
+
+    private float gravity;
+    private float smoothed;
+    private long lastTimestamp;
+    private long lastStepTimestamp;
+    private boolean armed;
+    private boolean primed;
+
+    /**
+     * @return   <code>true</code> if the sample completes a step.
+     */
+    boolean update(final long timestamp, final float x, final float y, final float z) {
+        final float magnitude = (float) Math.sqrt(x * x + y * y + z * z);
+        final float dt = (timestamp - lastTimestamp) / NANOS_PER_SECOND;
+        lastTimestamp = timestamp;
+        if (!primed || dt <= 0 || dt > MAX_GAP_S) {
+            gravity = primed ? gravity : magnitude;
+            smoothed = 0;
+            armed = false;
+            primed = true;
+            return false;
+        }
+        gravity += (magnitude - gravity) * dt / (GRAVITY_TIME_CONSTANT_S + dt);
+        smoothed += (magnitude - gravity - smoothed) * dt / (SMOOTHING_TIME_CONSTANT_S + dt);
+        if (smoothed < 0) {
+            armed = true;
+        } else if (armed && smoothed > RISE_THRESHOLD && timestamp - lastStepTimestamp >= MIN_STEP_INTERVAL_NS) {
+            armed = false;
+            lastStepTimestamp = timestamp;
+            return true;
+        }
+        return false;
+    }
+}
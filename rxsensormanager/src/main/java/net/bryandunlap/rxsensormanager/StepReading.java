@@ -0,0 +1,113 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+/**
+ * StepReading is an immutable snapshot of pedometry state: the steps taken since subscription, the cadence over a
+ * trailing window and a coarse activity class derived from that cadence.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class StepReading {
+    /**
+     * Fewer than {@link #WALKING_CADENCE} steps per minute.
+     *
+     * @since    0.9.0
+     */
+    public static final int ACTIVITY_STILL = 0;
+    /**
+     * At least {@link #WALKING_CADENCE} and fewer than {@link #RUNNING_CADENCE} steps per minute.
+     *
+     * @since    0.9.0
+     */
+    public static final int ACTIVITY_WALKING = 1;
+    /**
+     * At least {@link #RUNNING_CADENCE} steps per minute.
+     *
+     * @since    0.9.0
+     */
+    public static final int ACTIVITY_RUNNING = 2;
+
+    /**
+     * The lowest cadence in steps per minute classified as walking.
+     */
+    public static final float WALKING_CADENCE = 30f;
+    /**
+     * The lowest cadence in steps per minute classified as running.
+     */
+    public static final float RUNNING_CADENCE = 140f;
+
+    private final long steps;
+    private final float cadence;
+    private final long timestamp;
+    private final boolean detected;
+
+    StepReading(final long steps, final float cadence, final long timestamp, final boolean detected) {
+        this.steps = steps;
+        this.cadence = cadence;
+        this.timestamp = timestamp;
+        this.detected = detected;
+    }
+
+    /**
+     * @return   The number of steps taken since subscription.
+     * @since    0.9.0
+     */
+    public long steps() {
+        return steps;
+    }
+
+    /**
+     * @return   The number of steps per minute over the cadence window ending at {@link #timestamp()}.
+     * @since    0.9.0
+     */
+    public float cadence() {
+        return cadence;
+    }
+
+    /**
+     * @return   {@link #ACTIVITY_STILL}, {@link #ACTIVITY_WALKING} or {@link #ACTIVITY_RUNNING}.
+     * @since    0.9.0
+     */
+    public int activity() {
+        return activityOf(cadence);
+    }
+
+    /**
+     * @return   The time of the reading in nanoseconds, in the time base of the sensor events.
+     * @since    0.9.0
+     */
+    public long timestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return   <code>true</code> if steps are detected from the accelerometer rather than counted by the hardware
+     *           step counter.
+     * @since    0.9.0
+     */
+    public boolean isDetected() {
+        return detected;
+    }
+
+    static int activityOf(final float cadence) {
+        if (cadence >= RUNNING_CADENCE) {
+            return ACTIVITY_RUNNING;
+        }
+        return cadence >= WALKING_CADENCE ? ACTIVITY_WALKING : ACTIVITY_STILL;
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Turns step counts into {@link StepReading}s with a baseline and a windowed cadence.
+ * <p>
+ * Hardware totals are counted from the first total seen, which becomes the baseline, and a total lower than the
+ * previous one is taken as a counter restart. Until a full cadence window has passed since the baseline, cadence is
+ * measured over the time elapsed so far, but at least {@link #MIN_CADENCE_SPAN_NS}. Step times are kept in a fixed
+ * ring sized for
+ * {@link #MAX_STEPS_PER_SECOND} over the cadence window, so recording a step allocates only the emitted reading.
+ * Instances are not thread-safe and hold per-stream state.
+ */
+final class StepTracker {
+    /**
+     * The highest step rate the cadence window is sized for; faster steps push older ones out of the window early.
+     */
+    static final float MAX_STEPS_PER_SECOND = 5f;
+    /**
+     * The shortest span cadence is measured over, so that the first steps do not read as an extreme cadence.
+     */
+    static final long MIN_CADENCE_SPAN_NS = 1000000000L;
+
+    private static final float NANOS_PER_SECOND = 1e9f;
+    private static final float NANOS_PER_MINUTE = 60e9f;
+
+    private final long windowNs;
+    private final boolean detected;
+    @NonNull
+    private final long[] times;
+    @NonNull
+    private final long[] counts;
+    private int head;
+    private int size;
+    private long stepsInWindow;
+    private long steps;
+    private long lastTotal;
+    private long baselineTimestamp;
+    private boolean baselined;
+
+    StepTracker(final long windowNs, final boolean detected) {
+        this.windowNs = windowNs;
+        this.detected = detected;
+        final int capacity = (int) Math.ceil(windowNs / NANOS_PER_SECOND * MAX_STEPS_PER_SECOND) + 1;
+        this.times = new long[capacity];
+        this.counts = new long[capacity];
+    }
+
+    /**
+     * @return   A reading if the total advanced past the baseline, <code>null</code> otherwise.
+     */
+    @Nullable
+    StepReading onTotal(final long timestamp, final long total) {
+        if (!baselined) {
+            begin(timestamp);
+            lastTotal = total;
+            return null;
+        }
+        final long delta = total >= lastTotal ? total - lastTotal : total;
+        lastTotal = total;
+        return delta > 0 ? record(timestamp, delta) : null;
+    }
+
+    @NonNull
+    StepReading onStep(final long timestamp) {
+        begin(timestamp);
+        return record(timestamp, 1);
+    }
+
+    /**
+     * Set the baseline time of the cadence window, unless it is already set.
+     */
+    void begin(final long timestamp) {
+        if (!baselined) {
+            baselined = true;
+            baselineTimestamp = timestamp;
+        }
+    }
+
+    @NonNull
+    private StepReading record(final long timestamp, final long delta) {
+        steps += delta;
+        while (size > 0 && (size == times.length || times[tail()] <= timestamp - windowNs)) {
+            stepsInWindow -= counts[tail()];
+            --size;
+        }
+        times[head] = timestamp;
+        counts[head] = delta;
+        head = (head + 1) % times.length;
+        ++size;
+        stepsInWindow += delta;
+        final long spanNs = Math.min(windowNs, Math.max(timestamp - baselineTimestamp, MIN_CADENCE_SPAN_NS));
+        return new StepReading(steps, stepsInWindow * NANOS_PER_MINUTE / spanNs, timestamp, detected);
+    }
+
+    private int tail() {
+        return (head - size + times.length) % times.length;
+    }
+}
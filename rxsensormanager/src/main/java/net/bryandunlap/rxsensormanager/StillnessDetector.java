@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import io.reactivex.functions.Predicate;
+
+/**
+ * Detects stationary segments in a sensor stream.
+ * <p>
+ * The stream is considered still once every axis has stayed within <code>threshold</code> of a reference sample
+ * for at least <code>timeoutNs</code>. Any larger deviation moves the reference to the current sample. Runs in
+ * constant time and space per sample. Instances are not thread-safe and hold per-stream state.
+ */
+final class StillnessDetector implements Predicate<SensorEvent> {
+    private final float threshold;
+    private final long timeoutNs;
+    private float[] reference = new float[0];
+    private long stillSinceNs;
+    private boolean primed;
+
+    StillnessDetector(final float threshold, final long timeoutNs) {
+        this.threshold = threshold;
+        this.timeoutNs = timeoutNs;
+    }
+
+    @Override
+    public boolean test(@NonNull final SensorEvent sensorEvent) {
+        return update(sensorEvent.timestamp, sensorEvent.values);
+    }
+
+    /**
+     * @return   <code>true</code> if the stream has been still for at least the timeout.
+     */
+    boolean update(final long timestampNs, @NonNull final float[] values) {
+        if (!primed || reference.length != values.length || deviates(values)) {
+            if (reference.length != values.length) {
+                reference = new float[values.length];
+            }
+            System.arraycopy(values, 0, reference, 0, values.length);
+            stillSinceNs = timestampNs;
+            primed = true;
+            return false;
+        }
+        return timestampNs - stillSinceNs >= timeoutNs;
+    }
+
+    private boolean deviates(@NonNull final float[] values) {
+        for (int i = 0; i < values.length; ++i) {
+            if (Math.abs(values[i] - reference[i]) > threshold) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Trace;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SystraceSensorTracer writes {@link SensorTracer} sections to {@link Trace}, so that sensor work shows up in
+ * Systrace and Perfetto captures of the app.
+ * <p>
+ * Registration and lookup points are always traced; {@link SensorTracer#ON_SENSOR_CHANGED} is traced for one in
+ * every <code>eventSampleInterval</code> events. The public {@link Trace} API has no counters, so counters are
+ * ignored. Below JELLY_BEAN_MR2, where {@link Trace} does not exist, nothing is traced.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class SystraceSensorTracer implements SensorTracer {
+    private static final String[] SECTION_NAMES = {
+            "RxSensorManager.registerListener",
+            "RxSensorManager.unregisterListener",
+            "RxSensorManager.getDefaultSensor",
+            "RxSensorManager.onSensorChanged",
+    };
+
+    private final int eventSampleInterval;
+    private final AtomicLong events = new AtomicLong();
+
+    /**
+     * Public constructor.
+     *
+     * @param    eventSampleInterval  trace one in every <code>eventSampleInterval</code> sensor events
+     * @since    0.9.0
+     */
+    public SystraceSensorTracer(final int eventSampleInterval) {
+        if (eventSampleInterval <= 0) {
+            throw new IllegalArgumentException("eventSampleInterval must be positive: " + eventSampleInterval);
+        }
+        this.eventSampleInterval = eventSampleInterval;
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public long beginSection(final int point, final int sensorType) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            return NOT_TRACED;
+        }
+        if (point == ON_SENSOR_CHANGED && events.getAndIncrement() % eventSampleInterval != 0) {
+            return NOT_TRACED;
+        }
+        Trace.beginSection(SECTION_NAMES[point]);
+        return 0;
+    }
+
+    @Override
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    public void endSection(final int point, final int sensorType, final long token) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+
+    @Override
+    public void counter(final int point, final int sensorType, final long value) {
+        // Trace counters are not part of the public API.
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.SensorEvent;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * TensorWindower writes sensor values straight into fixed <code>[windowSize x channels]</code> tensors held in
+ * preallocated direct {@link FloatBuffer}s, emitting a complete tensor every <code>hopSize</code> rows.
+ * <p>
+ * The channels of a row are the axes of each configured sensor type, in the order the types are given. The first
+ * sensor type drives the windows: each of its events appends a row, filled with its own values and the most
+ * recent values of the other sensor types. Events of other types only update those held values.
+ * <p>
+ * Overlapping windows are filled in parallel, so a row is written once into every window that contains it and a
+ * completed window is emitted as is, without copying. Buffers rotate through a fixed set, and an emitted buffer
+ * is not written to again for <code>spareBuffers</code> hops. Consumers that keep a tensor longer than that must
+ * copy it. The buffers use native byte order.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class TensorWindower implements FlowableTransformer<SensorEvent, FloatBuffer> {
+    private static final FloatBuffer NOT_READY = FloatBuffer.allocate(0);
+
+    private final int windowSize;
+    private final int hopSize;
+    @NonNull
+    private final int[] sensorTypes;
+    @NonNull
+    private final int[] channelOffsets;
+    private final int channels;
+    private final int bufferCount;
+    @Nullable
+    private final float[] offsets;
+    @Nullable
+    private final float[] scales;
+
+    /**
+     * Create a {@link TensorWindower} that writes raw sensor values.
+     *
+     * @param    windowSize    the number of rows per tensor
+     * @param    hopSize       the number of rows between two consecutive tensors
+     * @param    sensorTypes   the sensor types that make up the channels, the first one driving the rows
+     * @param    axes          the number of values taken from each sensor type
+     * @param    spareBuffers  the number of hops an emitted tensor stays untouched
+     * @since    0.9.0
+     */
+    public TensorWindower(
+            final int windowSize,
+            final int hopSize,
+            @NonNull final int[] sensorTypes,
+            @NonNull final int[] axes,
+            final int spareBuffers
+    ) {
+        this(windowSize, hopSize, sensorTypes, axes, spareBuffers, null, null);
+    }
+
+    /**
+     * Create a {@link TensorWindower} that normalizes each channel as <code>(value - offset) * scale</code>.
+     *
+     * @param    windowSize    the number of rows per tensor
+     * @param    hopSize       the number of rows between two consecutive tensors
+     * @param    sensorTypes   the sensor types that make up the channels, the first one driving the rows
+     * @param    axes          the number of values taken from each sensor type
+     * @param    spareBuffers  the number of hops an emitted tensor stays untouched
+     * @param    offsets       the per-channel offsets, or <code>null</code> for none
+     * @param    scales        the per-channel scales, or <code>null</code> for none
+     * @since    0.9.0
+     */
+    public TensorWindower(
+            final int windowSize,
+            final int hopSize,
+            @NonNull final int[] sensorTypes,
+            @NonNull final int[] axes,
+            final int spareBuffers,
+            @Nullable final float[] offsets,
+            @Nullable final float[] scales
+    ) {
+        if (windowSize <= 0 || hopSize <= 0 || spareBuffers < 0) {
+            throw new IllegalArgumentException("windowSize and hopSize must be positive, spareBuffers non-negative");
+        }
+        if (sensorTypes.length == 0 || sensorTypes.length != axes.length) {
+            throw new IllegalArgumentException("sensorTypes and axes must be non-empty and of equal length");
+        }
+        this.windowSize = windowSize;
+        this.hopSize = hopSize;
+        this.sensorTypes = sensorTypes.clone();
+        this.channelOffsets = new int[axes.length + 1];
+        for (int i = 0; i < axes.length; ++i) {
+            channelOffsets[i + 1] = channelOffsets[i] + axes[i];
+        }
+        this.channels = channelOffsets[axes.length];
+        if ((offsets != null && offsets.length != channels) || (scales != null && scales.length != channels)) {
+            throw new IllegalArgumentException("offsets and scales must have one entry per channel: " + channels);
+        }
+        this.bufferCount = (windowSize + hopSize - 1) / hopSize + spareBuffers;
+        this.offsets = offsets == null ? null : offsets.clone();
+        this.scales = scales == null ? null : scales.clone();
+    }
+
+    /**
+     * @return   The number of channels in each row.
+     * @since    0.9.0
+     */
+    public int channels() {
+        return channels;
+    }
+
+    @Override
+    public Publisher<FloatBuffer> apply(final Flowable<SensorEvent> upstream) {
+        return Flowable.defer(new Callable<Publisher<FloatBuffer>>() {
+            @Override
+            public Publisher<FloatBuffer> call() {
+                return upstream
+                        .map(new WindowState())
+                        .filter(new Predicate<FloatBuffer>() {
+                            @Override
+                            public boolean test(final FloatBuffer tensor) {
+                                return tensor != NOT_READY;
+                            }
+                        });
+            }
+        });
+    }
+
+    private final class WindowState implements Function<SensorEvent, FloatBuffer> {
+        @NonNull
+        private final FloatBuffer[] buffers = new FloatBuffer[bufferCount];
+        @NonNull
+        private final float[] held = new float[channels];
+        private long row;
+
+        WindowState() {
+            for (int i = 0; i < bufferCount; ++i) {
+                buffers[i] = ByteBuffer.allocateDirect(windowSize * channels * 4)
+                        .order(ByteOrder.nativeOrder())
+                        .asFloatBuffer();
+            }
+        }
+
+        @Override
+        public FloatBuffer apply(final SensorEvent sensorEvent) {
+            final int sensor = indexOf(sensorEvent.sensor.getType());
+            if (sensor < 0) {
+                return NOT_READY;
+            }
+            final float[] values = sensorEvent.values;
+            for (int c = channelOffsets[sensor], i = 0; c < channelOffsets[sensor + 1]; ++c, ++i) {
+                held[c] = normalize(c, i < values.length ? values[i] : 0f);
+            }
+            if (sensor != 0) {
+                return NOT_READY;
+            }
+            final long first = row < windowSize ? 0 : (row - windowSize) / hopSize + 1;
+            final long last = row / hopSize;
+            for (long window = first; window <= last; ++window) {
+                final FloatBuffer buffer = buffers[(int) (window % bufferCount)];
+                final int base = (int) (row - window * hopSize) * channels;
+                for (int c = 0; c < channels; ++c) {
+                    buffer.put(base + c, held[c]);
+                }
+            }
+            final boolean complete = row - first * hopSize == windowSize - 1;
+            ++row;
+            if (!complete) {
+                return NOT_READY;
+            }
+            final FloatBuffer tensor = buffers[(int) (first % bufferCount)];
+            tensor.clear();
+            return tensor;
+        }
+
+        private int indexOf(final int type) {
+            for (int i = 0; i < sensorTypes.length; ++i) {
+                if (sensorTypes[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private float normalize(final int channel, final float value) {
+            final float shifted = offsets == null ? value : value - offsets[channel];
+            return scales == null ? shifted : shifted * scales[channel];
+        }
+    }
+}
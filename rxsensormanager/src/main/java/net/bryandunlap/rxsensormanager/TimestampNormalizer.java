@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.annotation.TargetApi;
+import android.hardware.SensorEvent;
+import android.os.Build;
+import android.os.SystemClock;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Predicate;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * TimestampNormalizer rewrites {@link SensorEvent#timestamp} in place to a clean, strictly increasing
+ * {@link SystemClock#elapsedRealtimeNanos()} time line.
+ * <p>
+ * For each sensor type the clock base is detected from the first event. Elapsed realtime is assumed whenever the
+ * timestamp is not ahead of that clock and within a minute of it, since a batched first event can be delivered late
+ * by its FIFO latency and would otherwise look closer to the monotonic clock. Only when elapsed realtime is
+ * impossible is the closer of the monotonic and wall clocks chosen. Monotonic and wall clock timestamps are mapped
+ * with the current offset between the clocks. Timestamps that match no known clock are mapped with the lower
+ * envelope of the delivery delay, which follows drops immediately and rises by at most <code>maxDriftPpm</code>,
+ * tracking a drifting sensor clock without absorbing FIFO latency.
+ * <p>
+ * Samples that arrive bunched together, with less than a quarter of the estimated sampling period between them,
+ * are spaced evenly at the estimated period after the first sample of their burst. The period is estimated from the
+ * span between bursts divided by the size of the earlier burst, so it holds for both steady and batched delivery.
+ * Duplicate and out-of-order samples are either repaired the same way or dropped. All state is primitive, owned by
+ * the subscription and touched only by the delivering thread.
+ *
+ * @author    Bryan Dunlap
+ * @since     0.9.0
+ */
+public final class TimestampNormalizer implements FlowableTransformer<SensorEvent, SensorEvent> {
+    /**
+     * Respace duplicate and out-of-order samples like bunched ones.
+     *
+     * @since    0.9.0
+     */
+    public static final int REPAIR = 0;
+    /**
+     * Drop duplicate and out-of-order samples.
+     *
+     * @since    0.9.0
+     */
+    public static final int DROP = 1;
+
+    static final int BASE_ELAPSED_REALTIME = 0;
+    static final int BASE_MONOTONIC = 1;
+    static final int BASE_WALL_CLOCK = 2;
+    static final int BASE_UNKNOWN = 3;
+
+    /**
+     * The largest distance from a clock at which a timestamp is still attributed to it, covering FIFO latency.
+     */
+    static final long DETECTION_TOLERANCE_NS = 60000000000L;
+    private static final float BURST_FRACTION = 0.25f;
+    private static final float PERIOD_SMOOTHING = 0.1f;
+
+    private final int mode;
+    private final double maxDrift;
+    @NonNull
+    private final Clocks clocks;
+
+    /**
+     * Public constructor.
+     *
+     * @param    mode         {@link #REPAIR} or {@link #DROP}
+     * @param    maxDriftPpm  the largest drift in parts per million of a sensor clock with an unknown base
+     * @since    0.9.0
+     */
+    public TimestampNormalizer(final int mode, final float maxDriftPpm) {
+        this(mode, maxDriftPpm, new SystemClocks());
+    }
+
+    TimestampNormalizer(final int mode, final float maxDriftPpm, @NonNull final Clocks clocks) {
+        if (mode != REPAIR && mode != DROP) {
+            throw new IllegalArgumentException("Unknown mode: " + mode);
+        }
+        if (maxDriftPpm < 0) {
+            throw new IllegalArgumentException("maxDriftPpm must not be negative: " + maxDriftPpm);
+        }
+        this.mode = mode;
+        this.maxDrift = maxDriftPpm * 1e-6;
+        this.clocks = clocks;
+    }
+
+    /**
+     * Map a normalized timestamp to the wall clock using the current offset between the clocks.
+     *
+     * @param    elapsedRealtimeNanos  a timestamp produced by this normalizer
+     * @return   The corresponding time in nanoseconds since the epoch.
+     * @since    0.9.0
+     */
+    public long toWallClockNanos(final long elapsedRealtimeNanos) {
+        return elapsedRealtimeNanos + clocks.wallClockNanos() - clocks.elapsedRealtimeNanos();
+    }
+
+    @Override
+    public Publisher<SensorEvent> apply(final Flowable<SensorEvent> upstream) {
+        return Flowable.defer(new Callable<Publisher<SensorEvent>>() {
+            @Override
+            public Publisher<SensorEvent> call() {
+                return upstream.filter(new Normalization());
+            }
+        });
+    }
+
+    final class Normalization implements Predicate<SensorEvent> {
+        private int[] types = new int[4];
+        private int[] bases = new int[4];
+        private long[] offsets = new long[4];
+        private long[] offsetTimes = new long[4];
+        private long[] lastMapped = new long[4];
+        private long[] lastOutput = new long[4];
+        private long[] runStarts = new long[4];
+        private int[] runCounts = new int[4];
+        private double[] periods = new double[4];
+        private int sensorCount;
+
+        @Override
+        public boolean test(@NonNull final SensorEvent sensorEvent) {
+            final long timestamp = normalize(sensorEvent.sensor.getType(), sensorEvent.timestamp);
+            if (timestamp == Long.MIN_VALUE) {
+                return false;
+            }
+            sensorEvent.timestamp = timestamp;
+            return true;
+        }
+
+        /**
+         * @return   The normalized timestamp, or {@link Long#MIN_VALUE} if the sample is dropped.
+         */
+        long normalize(final int type, final long timestamp) {
+            final long now = clocks.elapsedRealtimeNanos();
+            int id = indexOf(type);
+            if (id < 0) {
+                id = add(type, timestamp, now);
+                final long mapped = map(id, timestamp, now);
+                lastMapped[id] = mapped;
+                lastOutput[id] = mapped;
+                runStarts[id] = mapped;
+                runCounts[id] = 1;
+                return mapped;
+            }
+            final long mapped = map(id, timestamp, now);
+            final long delta = mapped - lastMapped[id];
+            if (delta <= 0 && mode == DROP) {
+                return Long.MIN_VALUE;
+            }
+            final double period = periods[id];
+            final long output;
+            if (delta <= 0 || delta < period * BURST_FRACTION) {
+                output = lastOutput[id] + Math.max(1L, Math.round(period));
+                ++runCounts[id];
+            } else {
+                final double runPeriod = (double) (mapped - runStarts[id]) / runCounts[id];
+                periods[id] = period > 0 ? period + PERIOD_SMOOTHING * (runPeriod - period) : runPeriod;
+                runStarts[id] = mapped;
+                runCounts[id] = 1;
+                output = Math.max(mapped, lastOutput[id] + 1);
+            }
+            lastMapped[id] = Math.max(lastMapped[id], mapped);
+            lastOutput[id] = output;
+            return output;
+        }
+
+        /**
+         * @return   The detected clock base of <code>type</code>.
+         */
+        int baseOf(final int type) {
+            return bases[indexOf(type)];
+        }
+
+        private long map(final int id, final long timestamp, final long now) {
+            switch (bases[id]) {
+                case BASE_ELAPSED_REALTIME:
+                    return timestamp;
+                case BASE_MONOTONIC:
+                    return timestamp + now - clocks.monotonicNanos();
+                case BASE_WALL_CLOCK:
+                    return timestamp + now - clocks.wallClockNanos();
+                default:
+                    final long observed = now - timestamp;
+                    final long allowed = offsets[id] + Math.round(maxDrift * (now - offsetTimes[id]));
+                    offsets[id] = Math.min(observed, allowed);
+                    offsetTimes[id] = now;
+                    return timestamp + offsets[id];
+            }
+        }
+
+        private int add(final int type, final long timestamp, final long now) {
+            if (sensorCount == types.length) {
+                final int capacity = sensorCount * 2;
+                types = Arrays.copyOf(types, capacity);
+                bases = Arrays.copyOf(bases, capacity);
+                offsets = Arrays.copyOf(offsets, capacity);
+                offsetTimes = Arrays.copyOf(offsetTimes, capacity);
+                lastMapped = Arrays.copyOf(lastMapped, capacity);
+                lastOutput = Arrays.copyOf(lastOutput, capacity);
+                runStarts = Arrays.copyOf(runStarts, capacity);
+                runCounts = Arrays.copyOf(runCounts, capacity);
+                periods = Arrays.copyOf(periods, capacity);
+            }
+            final int id = sensorCount++;
+            types[id] = type;
+            bases[id] = detectBase(timestamp, now);
+            offsets[id] = now - timestamp;
+            offsetTimes[id] = now;
+            periods[id] = 0;
+            return id;
+        }
+
+        private int detectBase(final long timestamp, final long now) {
+            if (timestamp <= now && now - timestamp <= DETECTION_TOLERANCE_NS) {
+                return BASE_ELAPSED_REALTIME;
+            }
+            final long monotonicDistance = Math.abs(clocks.monotonicNanos() - timestamp);
+            final long wallClockDistance = Math.abs(clocks.wallClockNanos() - timestamp);
+            if (monotonicDistance <= wallClockDistance && monotonicDistance <= DETECTION_TOLERANCE_NS) {
+                return BASE_MONOTONIC;
+            }
+            return wallClockDistance <= DETECTION_TOLERANCE_NS ? BASE_WALL_CLOCK : BASE_UNKNOWN;
+        }
+
+        private int indexOf(final int type) {
+            for (int i = 0; i < sensorCount; ++i) {
+                if (types[i] == type) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /**
+     * The clocks a normalizer maps between, all in nanoseconds.
+     */
+    interface Clocks {
+        long elapsedRealtimeNanos();
+
+        long monotonicNanos();
+
+        long wallClockNanos();
+    }
+
+    private static final class SystemClocks implements Clocks {
+        @Override
+        @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR1)
+        public long elapsedRealtimeNanos() {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+                return SystemClock.elapsedRealtimeNanos();
+            }
+            return SystemClock.elapsedRealtime() * 1000000L;
+        }
+
+        @Override
+        public long monotonicNanos() {
+            return System.nanoTime();
+        }
+
+        @Override
+        public long wallClockNanos() {
+            return System.currentTimeMillis() * 1000000L;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.support.annotation.NonNull;
+import java.nio.ByteBuffer;
+
+/**
+ * LEB128 variable-length integer helpers shared by the binary sensor formats.
+ * <p>
+ * Signed values are ZigZag encoded first so that small negative deltas stay small on the wire.
+ */
+final class VarInts {
+    static final int MAX_VARINT_BYTES = 10;
+
+    private VarInts() {
+        // no instances
+    }
+
+    static void putUnsigned(@NonNull final ByteBuffer buffer, long value) {
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    static void putSigned(@NonNull final ByteBuffer buffer, final long value) {
+        putUnsigned(buffer, (value << 1) ^ (value >> 63));
+    }
+
+    static long getUnsigned(@NonNull final ByteBuffer buffer) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            if (shift >= 64) {
+                throw new IllegalArgumentException("Malformed varint");
+            }
+            b = buffer.get();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    static long getSigned(@NonNull final ByteBuffer buffer) {
+        final long value = getUnsigned(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.os.HandlerThread;
+import android.support.annotation.NonNull;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.functions.Predicate;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import org.reactivestreams.Publisher;
+
+/**
+ * Software implementations of composite sensors for devices without the hardware ones.
+ * <p>
+ * Gravity is a low-pass filter of the accelerometer, linear acceleration is the accelerometer minus that gravity,
+ * and the rotation vector follows from gravity and the geomagnetic field like
+ * {@link android.hardware.SensorManager#getRotationMatrix(float[], float[], float[], float[])}. Raw sensors are
+ * registered once per type and sampling period and shared by every virtual stream, and all of them are delivered
+ * on one background {@link HandlerThread} that lives while any raw sensor listener is registered.
+ */
+final class VirtualSensors {
+    static final long GRAVITY_TIME_CONSTANT_NS = 200000000L;
+    private static final float MIN_FIELD_NORM = 0.1f;
+
+    @NonNull
+    private final RxSensorManager rxSensorManager;
+    @NonNull
+    private final Map<Long, Flowable<SensorSample>> rawSamples = new HashMap<Long, Flowable<SensorSample>>();
+    @NonNull
+    private final HandlerLease handlerLease;
+
+    VirtualSensors(@NonNull final RxSensorManager rxSensorManager) {
+        this(rxSensorManager, new HandlerThreadLease("RxSensorManager-virtual"));
+    }
+
+    VirtualSensors(@NonNull final RxSensorManager rxSensorManager, @NonNull final HandlerLease handlerLease) {
+        this.rxSensorManager = rxSensorManager;
+        this.handlerLease = handlerLease;
+    }
+
+    static boolean isSupported(final int type) {
+        return type == Sensor.TYPE_GRAVITY
+                || type == Sensor.TYPE_LINEAR_ACCELERATION
+                || type == Sensor.TYPE_ROTATION_VECTOR;
+    }
+
+    /**
+     * @return   A {@link Flowable} of virtual samples of <code>type</code>, which must be supported.
+     */
+    @NonNull
+    Flowable<SensorSample> observe(final int type, final int samplingPeriodUs) {
+        final Flowable<SensorSample> accelerometer = raw(Sensor.TYPE_ACCELEROMETER, samplingPeriodUs);
+        final Flowable<SensorSample> source = type == Sensor.TYPE_ROTATION_VECTOR
+                ? Flowable.merge(accelerometer, raw(Sensor.TYPE_MAGNETIC_FIELD, samplingPeriodUs))
+                : accelerometer;
+        return Flowable.defer(new Callable<Publisher<SensorSample>>() {
+            @Override
+            public Publisher<SensorSample> call() {
+                return source.map(new Derivation(type)).filter(new Predicate<SensorSample>() {
+                    @Override
+                    public boolean test(final SensorSample sample) {
+                        return sample != Derivation.NOT_READY;
+                    }
+                });
+            }
+        });
+    }
+
+    @NonNull
+    private synchronized Flowable<SensorSample> raw(final int type, final int samplingPeriodUs) {
+        final Long key = ((long) type << 32) | (samplingPeriodUs & 0xFFFFFFFFL);
+        Flowable<SensorSample> samples = rawSamples.get(key);
+        if (samples == null) {
+            samples = rxSensorManager.observeSensor(type, samplingPeriodUs, 0, handlerLease)
+                    .map(SensorSample.COPY)
+                    .share();
+            rawSamples.put(key, samples);
+        }
+        return samples;
+    }
+
+    /**
+     * Per-subscription state deriving one virtual type from raw samples.
+     */
+    static final class Derivation implements Function<SensorSample, SensorSample> {
+        static final SensorSample NOT_READY = new SensorSample(0, 0L, 0, new float[0]);
+
+        private final int type;
+        private final float[] gravity = new float[3];
+        private final float[] geomagnetic = new float[3];
+        private final float[] rotation = new float[9];
+        private long gravityTimestampNs;
+        private boolean hasGravity;
+        private boolean hasGeomagnetic;
+
+        Derivation(final int type) {
+            this.type = type;
+        }
+
+        @Override
+        public SensorSample apply(@NonNull final SensorSample sample) {
+            if (sample.type() == Sensor.TYPE_MAGNETIC_FIELD) {
+                System.arraycopy(sample.values(), 0, geomagnetic, 0, 3);
+                hasGeomagnetic = true;
+                return NOT_READY;
+            }
+            final float[] acceleration = sample.values();
+            updateGravity(sample.timestamp(), acceleration);
+            final float[] values;
+            switch (type) {
+                case Sensor.TYPE_GRAVITY:
+                    values = gravity.clone();
+                    break;
+                case Sensor.TYPE_LINEAR_ACCELERATION:
+                    values = new float[3];
+                    for (int i = 0; i < 3; ++i) {
+                        values[i] = acceleration[i] - gravity[i];
+                    }
+                    break;
+                default:
+                    if (!hasGeomagnetic || !rotationMatrix(gravity, geomagnetic, rotation)) {
+                        return NOT_READY;
+                    }
+                    values = rotationVector(rotation);
+                    break;
+            }
+            return new SensorSample(type, sample.timestamp(), sample.accuracy(), values, true);
+        }
+
+        private void updateGravity(final long timestampNs, @NonNull final float[] acceleration) {
+            if (!hasGravity) {
+                System.arraycopy(acceleration, 0, gravity, 0, 3);
+                hasGravity = true;
+            } else {
+                final float dt = Math.max(0L, timestampNs - gravityTimestampNs);
+                final float alpha = dt / (GRAVITY_TIME_CONSTANT_NS + dt);
+                for (int i = 0; i < 3; ++i) {
+                    gravity[i] += alpha * (acceleration[i] - gravity[i]);
+                }
+            }
+            gravityTimestampNs = timestampNs;
+        }
+    }
+
+    /**
+     * Like {@link android.hardware.SensorManager#getRotationMatrix(float[], float[], float[], float[])} for a 3x3
+     * matrix.
+     *
+     * @return   <code>false</code> in free fall or close to a magnetic pole.
+     */
+    static boolean rotationMatrix(
+            @NonNull final float[] gravity,
+            @NonNull final float[] geomagnetic,
+            @NonNull final float[] r
+    ) {
+        float ax = gravity[0];
+        float ay = gravity[1];
+        float az = gravity[2];
+        final float ex = geomagnetic[0];
+        final float ey = geomagnetic[1];
+        final float ez = geomagnetic[2];
+        float hx = ey * az - ez * ay;
+        float hy = ez * ax - ex * az;
+        float hz = ex * ay - ey * ax;
+        final float normH = (float) Math.sqrt(hx * hx + hy * hy + hz * hz);
+        if (normH < MIN_FIELD_NORM) {
+            return false;
+        }
+        final float invH = 1f / normH;
+        hx *= invH;
+        hy *= invH;
+        hz *= invH;
+        final float invA = 1f / (float) Math.sqrt(ax * ax + ay * ay + az * az);
+        ax *= invA;
+        ay *= invA;
+        az *= invA;
+        r[0] = hx;
+        r[1] = hy;
+        r[2] = hz;
+        r[3] = ay * hz - az * hy;
+        r[4] = az * hx - ax * hz;
+        r[5] = ax * hy - ay * hx;
+        r[6] = ax;
+        r[7] = ay;
+        r[8] = az;
+        return true;
+    }
+
+    /**
+     * @return   The rotation vector <code>[x, y, z, w]</code> of a row-major 3x3 rotation matrix.
+     */
+    @NonNull
+    static float[] rotationVector(@NonNull final float[] r) {
+        final float w = (float) Math.sqrt(Math.max(0f, 1f + r[0] + r[4] + r[8])) / 2f;
+        final float x = (float) Math.sqrt(Math.max(0f, 1f + r[0] - r[4] - r[8])) / 2f;
+        final float y = (float) Math.sqrt(Math.max(0f, 1f - r[0] + r[4] - r[8])) / 2f;
+        final float z = (float) Math.sqrt(Math.max(0f, 1f - r[0] - r[4] + r[8])) / 2f;
+        return new float[] {
+                Math.copySign(x, r[7] - r[5]),
+                Math.copySign(y, r[2] - r[6]),
+                Math.copySign(z, r[3] - r[1]),
+                w
+        };
+    }
+}
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DeadbandTest {
+    @Test
+    public void testAbsolutePerAxis() {
+        final Deadband.Gate gate = new Deadband(Deadband.ABSOLUTE, new float[] {1f, 0.1f}, 0).newGate();
+        assertTrue(gate.test(0L, new float[] {0f, 0f, 0f}));
+        assertFalse(gate.test(1L, new float[] {0.9f, 0.05f, 0.1f}));
+        assertTrue(gate.test(2L, new float[] {0.9f, 0.05f, 0.2f}));
+        assertFalse(gate.test(3L, new float[] {1.5f, 0f, 0.2f}));
+        assertTrue(gate.test(4L, new float[] {2f, 0f, 0.2f}));
+    }
+
+    @Test
+    public void testRelative() {
+        final Deadband.Gate gate = new Deadband(Deadband.RELATIVE, new float[] {0.1f}, 0).newGate();
+        assertTrue(gate.test(0L, new float[] {100f}));
+        assertFalse(gate.test(1L, new float[] {109f}));
+        assertFalse(gate.test(2L, new float[] {91f}));
+        assertTrue(gate.test(3L, new float[] {111f}));
+        assertFalse(gate.test(4L, new float[] {120f}));
+        assertTrue(gate.test(5L, new float[] {123f}));
+    }
+
+    @Test
+    public void testHeartbeat() {
+        final Deadband.Gate gate = new Deadband(Deadband.ABSOLUTE, new float[] {1f}, 1000).newGate();
+        assertTrue(gate.test(0L, new float[] {5f}));
+        assertFalse(gate.test(999999L, new float[] {5f}));
+        assertTrue(gate.test(1000000L, new float[] {5f}));
+        assertFalse(gate.test(1500000L, new float[] {5f}));
+    }
+
+    @Test
+    public void testReset() {
+        final Deadband.Gate gate = new Deadband(Deadband.ABSOLUTE, new float[] {1f}, 0).newGate();
+        assertTrue(gate.test(0L, new float[] {5f}));
+        assertFalse(gate.test(1L, new float[] {5f}));
+        gate.reset();
+        assertTrue(gate.test(2L, new float[] {5f}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNegativeTolerance() {
+        new Deadband(Deadband.ABSOLUTE, new float[] {-1f}, 0);
+    }
+}
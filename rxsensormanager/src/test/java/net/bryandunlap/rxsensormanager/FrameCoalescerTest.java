@@ -0,0 +1,106 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class FrameCoalescerTest {
+    @Test
+    public void testLatestPerFrame() throws Exception {
+        final ManualFrameClock frameClock = new ManualFrameClock();
+        final PublishProcessor<SensorEvent> events = PublishProcessor.create();
+        final TestSubscriber<SensorSample> testSubscriber = events
+                .compose(new FrameCoalescer(frameClock, FrameCoalescer.LATEST))
+                .test();
+        events.onNext(sensorEvent(Sensor.TYPE_ACCELEROMETER, 1L, 1f, 2f, 3f));
+        events.onNext(sensorEvent(Sensor.TYPE_ACCELEROMETER, 2L, 4f, 5f, 6f));
+        assertEquals(1, frameClock.callbacks.size());
+        testSubscriber.assertNoValues();
+        frameClock.tick();
+        testSubscriber.assertValueCount(1);
+        assertEquals(2L, testSubscriber.values().get(0).timestamp());
+        assertArrayEquals(new float[] {4f, 5f, 6f}, testSubscriber.values().get(0).values(), 0f);
+        frameClock.tick();
+        testSubscriber.assertValueCount(1);
+    }
+
+    @Test
+    public void testMeanPerFrame() throws Exception {
+        final ManualFrameClock frameClock = new ManualFrameClock();
+        final PublishProcessor<SensorEvent> events = PublishProcessor.create();
+        final TestSubscriber<SensorSample> testSubscriber = events
+                .compose(new FrameCoalescer(frameClock, FrameCoalescer.MEAN))
+                .test();
+        events.onNext(sensorEvent(Sensor.TYPE_LIGHT, 1L, 10f));
+        events.onNext(sensorEvent(Sensor.TYPE_LIGHT, 2L, 20f));
+        events.onNext(sensorEvent(Sensor.TYPE_LIGHT, 3L, 60f));
+        frameClock.tick();
+        events.onNext(sensorEvent(Sensor.TYPE_LIGHT, 4L, 5f));
+        frameClock.tick();
+        testSubscriber.assertValueCount(2);
+        assertEquals(30f, testSubscriber.values().get(0).values()[0], 0f);
+        assertEquals(5f, testSubscriber.values().get(1).values()[0], 0f);
+    }
+
+    @Test
+    public void testCompletesAfterPendingFrame() throws Exception {
+        final ManualFrameClock frameClock = new ManualFrameClock();
+        final PublishProcessor<SensorEvent> events = PublishProcessor.create();
+        final TestSubscriber<SensorSample> testSubscriber = events
+                .compose(new FrameCoalescer(frameClock, FrameCoalescer.LATEST))
+                .test();
+        events.onNext(sensorEvent(Sensor.TYPE_LIGHT, 1L, 10f));
+        events.onComplete();
+        testSubscriber.assertNotComplete();
+        frameClock.tick();
+        testSubscriber.assertValueCount(1);
+        testSubscriber.assertComplete();
+    }
+
+    private static final class ManualFrameClock implements FrameClock {
+        final List<Callback> callbacks = new ArrayList<Callback>();
+        private long frameTimeNanos;
+
+        @Override
+        public void postFrameCallback(final Callback callback) {
+            callbacks.add(callback);
+        }
+
+        @Override
+        public void removeFrameCallback(final Callback callback) {
+            callbacks.remove(callback);
+        }
+
+        void tick() {
+            frameTimeNanos += 16666667L;
+            final List<Callback> due = new ArrayList<Callback>(callbacks);
+            callbacks.clear();
+            for (final Callback callback : due) {
+                callback.doFrame(frameTimeNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.Random;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class OnlineCalibratorTest {
+    private static final float[] HARD_IRON = {10f, -20f, 5f};
+    private static final float[] RADII = {45f, 50f, 55f};
+
+    @Test
+    public void testMagnetometerConvergesToEllipsoid() {
+        final MagnetometerCalibrator calibrator = new MagnetometerCalibrator(1f, 0.01f);
+        final TestSubscriber<SensorCalibration> updates = calibrator.updates().test();
+        final Random random = new Random(42);
+        final float[] values = new float[3];
+        for (int i = 0; i < 2000; ++i) {
+            direction(random, values);
+            for (int axis = 0; axis < 3; ++axis) {
+                values[axis] = values[axis] * RADII[axis] + HARD_IRON[axis];
+            }
+            calibrator.correct(i, values);
+        }
+        final SensorCalibration calibration = updates.values().get(updates.values().size() - 1);
+        assertArrayEquals(HARD_IRON, calibration.offsets(), 0.05f);
+        assertEquals(50f / 45f, calibration.scales()[0], 0.01f);
+        assertEquals(50f / 55f, calibration.scales()[2], 0.01f);
+
+        direction(random, values);
+        for (int axis = 0; axis < 3; ++axis) {
+            values[axis] = values[axis] * RADII[axis] + HARD_IRON[axis];
+        }
+        calibrator.correct(2000, values);
+        final double magnitude = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
+        assertEquals(50.0, magnitude, 0.1);
+    }
+
+    @Test
+    public void testGyroscopeTracksBiasWhenStill() throws Exception {
+        final GyroscopeCalibrator calibrator = new GyroscopeCalibrator(0.01f, 100000, 0.5f, 0.0001f);
+        final TestSubscriber<SensorCalibration> updates = calibrator.updates().test();
+        final float[] bias = {0.02f, -0.01f, 0.005f};
+        final TestSubscriber<float[]> corrected = Flowable.range(0, 20)
+                .map(new Function<Integer, SensorEvent>() {
+                    @Override
+                    public SensorEvent apply(final Integer i) throws Exception {
+                        // Still for 10 ms steps, then a rotation in the last sample.
+                        final float rate = i == 19 ? 1f : 0f;
+                        return sensorEvent(
+                                Sensor.TYPE_GYROSCOPE_UNCALIBRATED,
+                                i * 10000000L,
+                                bias[0] + rate,
+                                bias[1],
+                                bias[2]
+                        );
+                    }
+                })
+                .compose(calibrator.corrector())
+                .map(new Function<SensorEvent, float[]>() {
+                    @Override
+                    public float[] apply(final SensorEvent sensorEvent) {
+                        return sensorEvent.values.clone();
+                    }
+                })
+                .test();
+        assertTrue(updates.valueCount() >= 1);
+        assertArrayEquals(bias, updates.values().get(0).offsets(), 1e-6f);
+        assertArrayEquals(new float[] {0f, 0f, 0f}, corrected.values().get(18), 1e-6f);
+        assertArrayEquals(new float[] {1f, 0f, 0f}, corrected.values().get(19), 1e-6f);
+    }
+
+    private static void direction(final Random random, final float[] values) {
+        double norm;
+        do {
+            for (int axis = 0; axis < 3; ++axis) {
+                values[axis] = (float) (random.nextGaussian());
+            }
+            norm = Math.sqrt(values[0] * values[0] + values[1] * values[1] + values[2] * values[2]);
+        } while (norm < 1e-3);
+        for (int axis = 0; axis < 3; ++axis) {
+            values[axis] /= norm;
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class RobustFiltersTest {
+    private static final Function<SensorEvent, Float> FIRST_VALUE = new Function<SensorEvent, Float>() {
+        @Override
+        public Float apply(final SensorEvent sensorEvent) {
+            return sensorEvent.values[0];
+        }
+    };
+
+    @Test
+    public void testRunningMedianMatchesSortedWindow() {
+        final Random random = new Random(42L);
+        final int window = 7;
+        final float[] history = new float[200];
+        final RunningMedian runningMedian = new RunningMedian(window);
+        for (int n = 0; n < history.length; ++n) {
+            history[n] = random.nextInt(20) - 10;
+            final float median = runningMedian.add(history[n]);
+
+            final float[] sorted = Arrays.copyOfRange(history, Math.max(0, n + 1 - window), n + 1);
+            Arrays.sort(sorted);
+            final int mid = sorted.length / 2;
+            final float expected = sorted.length % 2 == 1 ? sorted[mid] : (sorted[mid - 1] + sorted[mid]) / 2f;
+            assertEquals("sample " + n, expected, median, 0f);
+        }
+    }
+
+    @Test
+    public void testMedian() throws Exception {
+        final List<Float> values = events(1f, 9f, 2f, 3f, -40f, 4f)
+                .compose(RobustFilters.median(3))
+                .map(FIRST_VALUE)
+                .toList()
+                .blockingGet();
+        assertEquals(Arrays.asList(1f, 5f, 2f, 3f, 2f, 3f), values);
+    }
+
+    @Test
+    public void testHampelReplacesSpike() throws Exception {
+        final List<Float> values = events(1f, 1.1f, 0.9f, 1f, 50f, 1.05f)
+                .compose(RobustFilters.hampel(4, 3f, RobustFilters.REPLACE_OUTLIERS))
+                .map(FIRST_VALUE)
+                .toList()
+                .blockingGet();
+        assertEquals(Arrays.asList(1f, 1.1f, 0.9f, 1f, 1f, 1.05f), values);
+    }
+
+    @Test
+    public void testHampelDropsSpike() throws Exception {
+        final List<Float> values = events(1f, 1.1f, 0.9f, 1f, 50f, 1.05f)
+                .compose(RobustFilters.hampel(4, 3f, RobustFilters.DROP_OUTLIERS))
+                .map(FIRST_VALUE)
+                .toList()
+                .blockingGet();
+        assertEquals(Arrays.asList(1f, 1.1f, 0.9f, 1f, 1.05f), values);
+    }
+
+    @Test
+    public void testRateLimitClamps() throws Exception {
+        final RobustFilters.RateLimiter rateLimiter = new RobustFilters.RateLimiter(2f, false);
+        final float[] values = new float[] {0f, 0f};
+        rateLimiter.update(0L, values);
+        values[0] = 10f;
+        values[1] = -0.5f;
+        rateLimiter.update(500000000L, values);
+        assertArrayEquals(new float[] {1f, -0.5f}, values, 0f);
+    }
+
+    @Test
+    public void testRateLimitDrops() throws Exception {
+        final RobustFilters.RateLimiter rateLimiter = new RobustFilters.RateLimiter(2f, true);
+        rateLimiter.update(0L, new float[] {0f});
+        assertEquals(false, rateLimiter.update(500000000L, new float[] {10f}));
+        assertEquals(true, rateLimiter.update(1000000000L, new float[] {1.5f}));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHampelInvalidMode() {
+        RobustFilters.hampel(5, 3f, 7);
+    }
+
+    private static Flowable<SensorEvent> events(final float... values) throws Exception {
+        final SensorEvent[] events = new SensorEvent[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            events[i] = sensorEvent(Sensor.TYPE_LIGHT, i, values[i]);
+        }
+        return Flowable.fromArray(events);
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorManager;
+import io.reactivex.Flowable;
+import io.reactivex.processors.PublishProcessor;
+import io.reactivex.subscribers.TestSubscriber;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class RotationVectorOperatorTest {
+    private static final float HALF_SQRT2 = (float) Math.sqrt(0.5);
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void testYawQuarterTurn() throws Exception {
+        final Orientation orientation = Flowable
+                .just(sensorEvent(Sensor.TYPE_ROTATION_VECTOR, 7L, 0f, 0f, HALF_SQRT2, HALF_SQRT2))
+                .compose(new RotationVectorOperator(SensorManager.AXIS_X, SensorManager.AXIS_Y, 1f, false))
+                .blockingFirst();
+        assertEquals(7L, orientation.timestamp());
+        assertArrayEquals(new float[] {HALF_SQRT2, 0f, 0f, HALF_SQRT2}, orientation.quaternion(), EPSILON);
+        assertArrayEquals(new float[] {0f, -1f, 0f, 1f, 0f, 0f, 0f, 0f, 1f}, orientation.matrix(), EPSILON);
+        assertEquals((float) (-Math.PI / 2), orientation.angles()[0], EPSILON);
+    }
+
+    @Test
+    public void testMissingScalarComponent() throws Exception {
+        final Orientation orientation = Flowable
+                .just(sensorEvent(Sensor.TYPE_ROTATION_VECTOR, 0L, 0f, 0f, HALF_SQRT2))
+                .compose(new RotationVectorOperator(SensorManager.AXIS_X, SensorManager.AXIS_Y, 1f, false))
+                .blockingFirst();
+        assertEquals(HALF_SQRT2, orientation.quaternion()[0], EPSILON);
+    }
+
+    @Test
+    public void testRemap() throws Exception {
+        final float[] identity = new float[] {1f, 0f, 0f, 0f, 1f, 0f, 0f, 0f, 1f};
+        final float[] remapped = new float[9];
+        RotationVectorOperator.remap(identity, SensorManager.AXIS_Y, SensorManager.AXIS_MINUS_X, remapped);
+        assertArrayEquals(new float[] {0f, 1f, 0f, -1f, 0f, 0f, 0f, 0f, 1f}, remapped, 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRemap() throws Exception {
+        new RotationVectorOperator(SensorManager.AXIS_X, SensorManager.AXIS_MINUS_X, 1f, false);
+    }
+
+    @Test
+    public void testRelativeToCapturedReference() throws Exception {
+        final RotationVectorOperator operator =
+                new RotationVectorOperator(SensorManager.AXIS_X, SensorManager.AXIS_Y, 1f, true);
+        final PublishProcessor<SensorEvent> events = PublishProcessor.create();
+        final List<float[]> quaternions = new ArrayList<float[]>();
+        final TestSubscriber<Orientation> subscriber = events.compose(operator).test();
+        events.onNext(sensorEvent(Sensor.TYPE_ROTATION_VECTOR, 0L, 0f, 0f, HALF_SQRT2, HALF_SQRT2));
+        quaternions.add(subscriber.values().get(0).quaternion().clone());
+        events.onNext(sensorEvent(Sensor.TYPE_ROTATION_VECTOR, 1L, 0f, 0f, 1f, 0f));
+        quaternions.add(subscriber.values().get(1).quaternion().clone());
+        operator.captureReference();
+        events.onNext(sensorEvent(Sensor.TYPE_ROTATION_VECTOR, 2L, 0f, 0f, 1f, 0f));
+        quaternions.add(subscriber.values().get(2).quaternion().clone());
+
+        assertSame(subscriber.values().get(0), subscriber.values().get(2));
+        assertArrayEquals(new float[] {1f, 0f, 0f, 0f}, quaternions.get(0), EPSILON);
+        assertArrayEquals(new float[] {HALF_SQRT2, 0f, 0f, HALF_SQRT2}, quaternions.get(1), EPSILON);
+        assertArrayEquals(new float[] {1f, 0f, 0f, 0f}, quaternions.get(2), EPSILON);
+    }
+
+    @Test
+    public void testSlerpHalfway() throws Exception {
+        final float[] from = new float[] {1f, 0f, 0f, 0f};
+        final float[] to = new float[] {0f, 0f, 0f, 1f};
+        RotationVectorOperator.slerp(from, to, 0.5f, from);
+        assertArrayEquals(new float[] {HALF_SQRT2, 0f, 0f, HALF_SQRT2}, from, EPSILON);
+    }
+
+    @Test
+    public void testSlerpTakesShorterArc() throws Exception {
+        final float[] from = new float[] {1f, 0f, 0f, 0f};
+        final float[] to = new float[] {-1f, 0f, 0f, 0f};
+        final float[] out = new float[4];
+        RotationVectorOperator.slerp(from, to, 0.5f, out);
+        assertArrayEquals(new float[] {1f, 0f, 0f, 0f}, out, EPSILON);
+    }
+}
@@ -23,19 +23,30 @@ import android.hardware.SensorManager;
 import android.hardware.TriggerEvent;
 import android.hardware.TriggerEventListener;
 import android.os.Build;
+import android.os.Handler;
 import io.reactivex.disposables.Disposable;
+import io.reactivex.schedulers.TestScheduler;
+import io.reactivex.subscribers.TestSubscriber;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.invocation.InvocationOnMock;
 import org.mockito.stubbing.Answer;
 
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.inOrder;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -133,6 +144,174 @@ public class RxSensorManagerTest {
         assertEquals(disposable.isDisposed(), true);
     }
 
+    @Test
+    public void testObserveSensorWithDeadband() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<SensorEvent> subscriber = rxSensorManager.observeSensor(
+                Sensor.TYPE_PRESSURE,
+                0,
+                0,
+                new Deadband(Deadband.ABSOLUTE, new float[] {0.5f}, 0)
+        ).test();
+        final SensorEventListener listener = argumentCaptor.getValue();
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 1L, 1000f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 2L, 1000.2f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 3L, 1000.4f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 4L, 1000.6f));
+        listener.onAccuracyChanged(mockSensor, SensorManager.SENSOR_STATUS_ACCURACY_LOW);
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 5L, 1000.6f));
+        subscriber.assertValueCount(3);
+        assertEquals(1L, subscriber.values().get(0).timestamp);
+        assertEquals(4L, subscriber.values().get(1).timestamp);
+        assertEquals(5L, subscriber.values().get(2).timestamp);
+    }
+
+    @Test
+    public void testObserveSensorWithHandler() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final Handler mockHandler = mock(Handler.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(0),
+                eq(mockHandler)
+        )).thenReturn(true);
+        rxSensorManager.observeSensor(Sensor.TYPE_ACCELEROMETER, 0, 0, mockHandler)
+                .test()
+                .assertNoErrors();
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void testObserveSensorWithHandlerApi19() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 19);
+        final Handler mockHandler = mock(Handler.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(0),
+                eq(0),
+                eq(mockHandler)
+        )).thenReturn(false);
+        rxSensorManager.observeSensor(Sensor.TYPE_ACCELEROMETER, 0, 0, mockHandler)
+                .test()
+                .assertError(SensorListenerException.class);
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void testObserveSensorWithLatencyBudgetApi21() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 21);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensor.getMinDelay()).thenReturn(5000);
+        when(mockSensor.getFifoReservedEventCount()).thenReturn(300);
+        when(mockSensor.getFifoMaxEventCount()).thenReturn(3000);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(10000),
+                eq(1000000)
+        )).thenReturn(true);
+        rxSensorManager.observeSensor(Sensor.TYPE_ACCELEROMETER, new LatencyBudget(100f, 1000000, 4))
+                .test()
+                .assertNoErrors();
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.LOLLIPOP)
+    public void testObserveSensorWithLatencyBudgetLimitedByFifoApi21() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 21);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensor.getMinDelay()).thenReturn(20000);
+        when(mockSensor.getFifoReservedEventCount()).thenReturn(300);
+        when(mockSensor.getFifoMaxEventCount()).thenReturn(3000);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(20000),
+                eq(13500000)
+        )).thenReturn(true);
+        rxSensorManager.observeSensor(Sensor.TYPE_ACCELEROMETER, new LatencyBudget(100f, 60000000, 4))
+                .test()
+                .assertNoErrors();
+    }
+
+    @Test
+    public void testObserveSensorWithLatencyBudgetNoBatching() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(20000)
+        )).thenReturn(true);
+        rxSensorManager.observeSensor(Sensor.TYPE_ACCELEROMETER, new LatencyBudget(50f, 1000000, 1))
+                .test()
+                .assertNoErrors();
+    }
+
+    @Test
+    public void testObserveSensorOnDemandPausesWhenIdle() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<SensorEvent> testSubscriber =
+                rxSensorManager.observeSensorOnDemand(Sensor.TYPE_ACCELEROMETER, 0, 0, 1000).test(0);
+        final SensorEventListener listener = argumentCaptor.getValue();
+        listener.onSensorChanged(sensorEventAt(0L));
+        listener.onSensorChanged(sensorEventAt(500000L));
+        verify(mockSensorManager, times(0)).unregisterListener(any(SensorEventListener.class));
+        listener.onSensorChanged(sensorEventAt(1000000L));
+        verify(mockSensorManager, times(1)).unregisterListener(listener);
+        testSubscriber.request(1);
+        verify(mockSensorManager, times(2)).registerListener(listener, mockSensor, 0);
+        testSubscriber.assertValueCount(1);
+    }
+
+    @Test
+    public void testObserveSensorOnDemandStaysRegisteredWithDemand() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<SensorEvent> testSubscriber =
+                rxSensorManager.observeSensorOnDemand(Sensor.TYPE_ACCELEROMETER, 0, 0, 1000).test();
+        final SensorEventListener listener = argumentCaptor.getValue();
+        for (int i = 0; i < 5; ++i) {
+            listener.onSensorChanged(sensorEventAt(i * 1000000L));
+        }
+        verify(mockSensorManager, times(0)).unregisterListener(any(SensorEventListener.class));
+        testSubscriber.assertValueCount(5);
+        testSubscriber.dispose();
+        verify(mockSensorManager, times(1)).unregisterListener(listener);
+    }
+
+    @Test
+    public void testObserveSensorOnDemandOnErrorSensorNotFoundException() {
+        when(mockSensorManager.getDefaultSensor(INVALID_SENSOR_TYPE)).thenReturn(null);
+        rxSensorManager.observeSensorOnDemand(INVALID_SENSOR_TYPE, 0, 0, 1000)
+                .test()
+                .assertError(SensorNotFoundException.class);
+    }
+
     @Test
     public void testObserveSensorAccuracy() throws Exception {
         setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
@@ -265,6 +444,315 @@ public class RxSensorManagerTest {
         assertEquals(disposable.isDisposed(), true);
     }
 
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN_MR2)
+    @Test
+    public void testObserveSensorWhileMoving() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 18);
+        final Sensor mockTriggerSensor = mock(Sensor.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_SIGNIFICANT_MOTION)).thenReturn(mockTriggerSensor);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        final ArgumentCaptor<TriggerEventListener> triggerCaptor = ArgumentCaptor.forClass(TriggerEventListener.class);
+        when(mockSensorManager.requestTriggerSensor(
+                triggerCaptor.capture(),
+                eq(mockTriggerSensor)
+        )).thenAnswer(new Answer<Boolean>() {
+            int armed = 0;
+
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                // Fire only on the first arming so the subscription ends up idle.
+                if (armed++ == 0) {
+                    triggerCaptor.getValue().onTrigger(mock(TriggerEvent.class));
+                }
+                return true;
+            }
+        });
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(5000)
+        )).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                final SensorEventListener listener = argumentCaptor.getValue();
+                listener.onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 0L, 0f, 0f, 9.8f));
+                listener.onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 1000000L, 3f, 0f, 9.8f));
+                listener.onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 2000000L, 3f, 0f, 9.8f));
+                listener.onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 3000000L, 3f, 0f, 9.8f));
+                return true;
+            }
+        });
+        rxSensorManager.observeSensorWhileMoving(Sensor.TYPE_ACCELEROMETER, 5000, 0, 0.5f, 2000)
+                .test()
+                .assertValueCount(4)
+                .assertNotComplete();
+        verify(mockSensorManager).unregisterListener(any(SensorEventListener.class));
+        verify(mockSensorManager, times(2)).requestTriggerSensor(
+                any(TriggerEventListener.class),
+                eq(mockTriggerSensor)
+        );
+    }
+
+    @Test
+    public void testObserveSensorOrVirtualPrefersHardware() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_GRAVITY)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0)
+        )).thenAnswer(new Answer<Boolean>() {
+            @Override
+            public Boolean answer(InvocationOnMock invocation) throws Throwable {
+                argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_GRAVITY, 0L, 0f, 0f, 9.8f));
+                return true;
+            }
+        });
+        final TestSubscriber<SensorSample> gravity =
+                rxSensorManager.observeSensorOrVirtual(Sensor.TYPE_GRAVITY, 0).test();
+        gravity.assertValueCount(1);
+        assertFalse(gravity.values().get(0).isVirtual());
+    }
+
+    @Test
+    public void testObserveSensorOrVirtualOnErrorSensorNotFoundException() {
+        when(mockSensorManager.getDefaultSensor(INVALID_SENSOR_TYPE)).thenReturn(null);
+        rxSensorManager.observeSensorOrVirtual(INVALID_SENSOR_TYPE, 0)
+                .test()
+                .assertError(SensorNotFoundException.class);
+    }
+
+    @Test
+    public void testObserveAllUsesSingleListener() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final Sensor mockGyroscope = mock(Sensor.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE)).thenReturn(mockGyroscope);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                any(Sensor.class),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<SensorEvent> testSubscriber = rxSensorManager.observeAll(
+                new int[] {Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE, Sensor.TYPE_ACCELEROMETER},
+                0,
+                0
+        ).test();
+        final SensorEventListener listener = argumentCaptor.getValue();
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 0L, 0f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_GYROSCOPE, 1L, 0f));
+
+        assertEquals(2, argumentCaptor.getAllValues().size());
+        assertSame(argumentCaptor.getAllValues().get(0), argumentCaptor.getAllValues().get(1));
+        verify(mockSensorManager).registerListener(listener, mockSensor, 0);
+        verify(mockSensorManager).registerListener(listener, mockGyroscope, 0);
+        testSubscriber.assertValueCount(2);
+        testSubscriber.cancel();
+        verify(mockSensorManager).unregisterListener(listener);
+    }
+
+    @Test
+    public void testObserveAllOnErrorSensorNotFoundException() {
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.getDefaultSensor(INVALID_SENSOR_TYPE)).thenReturn(null);
+        rxSensorManager.observeAll(new int[] {Sensor.TYPE_ACCELEROMETER, INVALID_SENSOR_TYPE}, 0, 0)
+                .test()
+                .assertError(SensorNotFoundException.class);
+    }
+
+    @Test
+    public void testObserveAllOnErrorSensorListenerException() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final Sensor mockGyroscope = mock(Sensor.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_GYROSCOPE)).thenReturn(mockGyroscope);
+        when(mockSensorManager.registerListener(any(SensorEventListener.class), eq(mockSensor), eq(0)))
+                .thenReturn(true);
+        when(mockSensorManager.registerListener(any(SensorEventListener.class), eq(mockGyroscope), eq(0)))
+                .thenReturn(false);
+        rxSensorManager.observeAll(new int[] {Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE}, 0, 0)
+                .test()
+                .assertError(SensorListenerException.class);
+        verify(mockSensorManager).unregisterListener(any(SensorEventListener.class));
+    }
+
+    @Test
+    public void testObserveSensorResilientRetriesWithBackoff() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final TestScheduler scheduler = new TestScheduler();
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(null);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0)
+        )).thenReturn(false, true);
+        final TestSubscriber<SensorSample> testSubscriber = rxSensorManager
+                .observeSensorResilient(Sensor.TYPE_ACCELEROMETER, 0, 0, 100L, 300L, scheduler)
+                .test();
+        testSubscriber.assertValueCount(1).assertNotTerminated();
+        assertTrue(testSubscriber.values().get(0).isGap());
+
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        scheduler.advanceTimeBy(100L, TimeUnit.MILLISECONDS);
+        verify(mockSensorManager, times(1)).registerListener(any(SensorEventListener.class), eq(mockSensor), eq(0));
+        scheduler.advanceTimeBy(199L, TimeUnit.MILLISECONDS);
+        verify(mockSensorManager, times(1)).registerListener(any(SensorEventListener.class), eq(mockSensor), eq(0));
+        scheduler.advanceTimeBy(1L, TimeUnit.MILLISECONDS);
+        verify(mockSensorManager, times(2)).registerListener(any(SensorEventListener.class), eq(mockSensor), eq(0));
+
+        argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_ACCELEROMETER, 42L, 1f));
+        testSubscriber.assertValueCount(2).assertNoErrors().assertNotComplete();
+        assertFalse(testSubscriber.values().get(1).isGap());
+        assertEquals(42L, testSubscriber.values().get(1).timestamp());
+        testSubscriber.cancel();
+        verify(mockSensorManager).unregisterListener(argumentCaptor.getValue());
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.N)
+    public void testObserveSensorResilientWithoutDynamicSensorDiscoveryApi24() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 24);
+        when(mockSensorManager.isDynamicSensorDiscoverySupported()).thenReturn(false);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(0),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<SensorSample> testSubscriber = rxSensorManager
+                .observeSensorResilient(Sensor.TYPE_HEART_RATE, 0, 0, 100L, 300L, new TestScheduler())
+                .test();
+        argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_HEART_RATE, 42L, 60f));
+        testSubscriber.assertValueCount(1).assertNoErrors().assertNotComplete();
+        verify(mockSensorManager, times(0)).registerDynamicSensorCallback(
+                any(SensorManager.DynamicSensorCallback.class)
+        );
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.N)
+    public void testObserveSensorResilientRebindsAfterDisconnectionApi24() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 24);
+        final Sensor replacementSensor = mock(Sensor.class);
+        when(mockSensor.getType()).thenReturn(Sensor.TYPE_HEART_RATE);
+        when(replacementSensor.getType()).thenReturn(Sensor.TYPE_HEART_RATE);
+        when(mockSensorManager.isDynamicSensorDiscoverySupported()).thenReturn(true);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> listenerCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                listenerCaptor.capture(),
+                any(Sensor.class),
+                eq(0),
+                eq(0)
+        )).thenReturn(true);
+        final ArgumentCaptor<SensorManager.DynamicSensorCallback> callbackCaptor =
+                ArgumentCaptor.forClass(SensorManager.DynamicSensorCallback.class);
+        doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                return null;
+            }
+        }).when(mockSensorManager).registerDynamicSensorCallback(callbackCaptor.capture());
+        final TestSubscriber<SensorSample> testSubscriber = rxSensorManager
+                .observeSensorResilient(Sensor.TYPE_HEART_RATE, 0, 0, 100L, 300L, new TestScheduler())
+                .test();
+        listenerCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_HEART_RATE, 42L, 60f));
+
+        final SensorManager.DynamicSensorCallback disconnectedCallback = callbackCaptor.getValue();
+        disconnectedCallback.onDynamicSensorDisconnected(mockSensor);
+        testSubscriber.assertValueCount(2).assertNoErrors().assertNotComplete();
+        assertTrue(testSubscriber.values().get(1).isGap());
+        assertEquals(42L, testSubscriber.values().get(1).timestamp());
+        verify(mockSensorManager).unregisterListener(listenerCaptor.getValue());
+
+        verify(mockSensorManager).unregisterDynamicSensorCallback(disconnectedCallback);
+        callbackCaptor.getValue().onDynamicSensorConnected(replacementSensor);
+        verify(mockSensorManager).registerListener(any(SensorEventListener.class), eq(replacementSensor), eq(0), eq(0));
+        listenerCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_HEART_RATE, 84L, 61f));
+        testSubscriber.assertValueCount(3).assertNoErrors().assertNotComplete();
+        assertFalse(testSubscriber.values().get(2).isGap());
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.N)
+    public void testObserveSensorResilientFindsConnectedDynamicSensorApi24() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 24);
+        when(mockSensorManager.isDynamicSensorDiscoverySupported()).thenReturn(true);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_HEART_RATE)).thenReturn(null);
+        when(mockSensorManager.getDynamicSensorList(Sensor.TYPE_HEART_RATE))
+                .thenReturn(Collections.singletonList(mockSensor));
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(0),
+                eq(0)
+        )).thenReturn(true);
+        rxSensorManager
+                .observeSensorResilient(Sensor.TYPE_HEART_RATE, 0, 0, 100L, 300L, new TestScheduler())
+                .test()
+                .assertNoValues()
+                .assertNoErrors();
+        verify(mockSensorManager).registerListener(any(SensorEventListener.class), eq(mockSensor), eq(0), eq(0));
+    }
+
+    @Test
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    public void testObserveStepsFromStepCounterApi19() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 19);
+        final TestScheduler scheduler = new TestScheduler();
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_STEP_COUNTER)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(
+                argumentCaptor.capture(),
+                eq(mockSensor),
+                eq(SensorManager.SENSOR_DELAY_NORMAL),
+                eq(0)
+        )).thenReturn(true);
+        final TestSubscriber<StepReading> testSubscriber = rxSensorManager.observeSteps(10000000, scheduler).test();
+        final SensorEventListener listener = argumentCaptor.getValue();
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_STEP_COUNTER, 0L, 1000f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_STEP_COUNTER, 1000000000L, 1003f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_STEP_COUNTER, 2000000000L, 1003f));
+        listener.onSensorChanged(sensorEvent(Sensor.TYPE_STEP_COUNTER, 3000000000L, 1005f));
+        testSubscriber.assertValueCount(2);
+        assertEquals(3L, testSubscriber.values().get(0).steps());
+        assertEquals(180f, testSubscriber.values().get(0).cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_RUNNING, testSubscriber.values().get(0).activity());
+        assertEquals(5L, testSubscriber.values().get(1).steps());
+        assertEquals(100f, testSubscriber.values().get(1).cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_WALKING, testSubscriber.values().get(1).activity());
+        assertFalse(testSubscriber.values().get(1).isDetected());
+
+        scheduler.advanceTimeBy(10L, TimeUnit.SECONDS);
+        testSubscriber.assertValueCount(3).assertNotTerminated();
+        assertEquals(5L, testSubscriber.values().get(2).steps());
+        assertEquals(StepReading.ACTIVITY_STILL, testSubscriber.values().get(2).activity());
+        scheduler.advanceTimeBy(10L, TimeUnit.SECONDS);
+        testSubscriber.assertValueCount(3);
+    }
+
+    @Test
+    public void testObserveStepsFallsBackToAccelerometer() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(SensorManager.SENSOR_DELAY_GAME)
+        )).thenReturn(true);
+        rxSensorManager.observeSteps(10000000)
+                .test()
+                .assertNoValues()
+                .assertNoErrors();
+        verify(mockSensorManager, times(0)).getDefaultSensor(Sensor.TYPE_STEP_COUNTER);
+    }
+
     @TargetApi(Build.VERSION_CODES.N)
     @Test
     public void testObserveDynamicSensorConnections() throws Exception {
@@ -324,7 +812,56 @@ public class RxSensorManagerTest {
         assertEquals(disposable.isDisposed(), true);
     }
 
+    private static SensorEvent sensorEventAt(final long timestamp) {
+        final SensorEvent sensorEvent = mock(SensorEvent.class);
+        sensorEvent.timestamp = timestamp;
+        return sensorEvent;
+    }
+
     // http://stackoverflow.com/questions/38074224/stub-value-of-build-version-sdk-int-in-local-unit-test
+    @Test
+    public void testObserveSensorPerFrameReleasesHandlerAfterUnregistering() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        when(mockSensor.getType()).thenReturn(Sensor.TYPE_ACCELEROMETER);
+        final Handler mockHandler = mock(Handler.class);
+        final HandlerLease mockHandlerLease = mock(HandlerLease.class);
+        when(mockHandlerLease.acquire()).thenReturn(mockHandler);
+        when(mockSensorManager.registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(0),
+                eq(mockHandler)
+        )).thenReturn(true);
+        final FrameCoalescer frameCoalescer = new FrameCoalescer(mock(FrameClock.class), FrameCoalescer.LATEST);
+        rxSensorManager.observeSensorPerFrame(Sensor.TYPE_ACCELEROMETER, 0, frameCoalescer, mockHandlerLease)
+                .test()
+                .dispose();
+        final InOrder inOrder = inOrder(mockHandlerLease, mockSensorManager);
+        inOrder.verify(mockHandlerLease).acquire();
+        inOrder.verify(mockSensorManager).registerListener(
+                any(SensorEventListener.class),
+                eq(mockSensor),
+                eq(0),
+                eq(mockHandler)
+        );
+        inOrder.verify(mockSensorManager).unregisterListener(any(SensorEventListener.class));
+        inOrder.verify(mockHandlerLease).release();
+    }
+
+    @Test
+    public void testObserveSensorPerFrameReleasesHandlerWhenRegistrationFails() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(mockSensor);
+        final HandlerLease mockHandlerLease = mock(HandlerLease.class);
+        when(mockHandlerLease.acquire()).thenReturn(mock(Handler.class));
+        final FrameCoalescer frameCoalescer = new FrameCoalescer(mock(FrameClock.class), FrameCoalescer.LATEST);
+        rxSensorManager.observeSensorPerFrame(Sensor.TYPE_ACCELEROMETER, 0, frameCoalescer, mockHandlerLease)
+                .test()
+                .assertError(SensorListenerException.class);
+        verify(mockHandlerLease).release();
+    }
+
     private static void setFinalStatic(Field field, Object newValue) throws Exception {
         field.setAccessible(true);
         Field modifiersField = Field.class.getDeclaredField("modifiers");
@@ -0,0 +1,144 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SampleQuantizerTest {
+    @Test
+    public void testForSensorStepCoversMaximumRange() {
+        final Sensor sensor = sensor(Sensor.TYPE_ACCELEROMETER, 78.4532f, 0.001f);
+        final SampleQuantizer quantizer = SampleQuantizer.forSensor(sensor, SampleQuantizer.BITS_16);
+        assertEquals(78.4532f / Short.MAX_VALUE, quantizer.step(), 0f);
+        assertEquals(78.4532f, quantizer.maxValue(), 1e-3f);
+    }
+
+    @Test
+    public void testForSensorStepNotFinerThanResolution() {
+        final Sensor sensor = sensor(Sensor.TYPE_LIGHT, 10f, 1f);
+        final SampleQuantizer quantizer = SampleQuantizer.forSensor(sensor, SampleQuantizer.BITS_16);
+        assertEquals(1f, quantizer.step(), 0f);
+    }
+
+    @Test
+    public void testForSensorWithoutRangeOrResolution() {
+        final Sensor sensor = sensor(Sensor.TYPE_GRAVITY, 0f, 0f);
+        final SampleQuantizer quantizer = SampleQuantizer.forSensor(sensor, SampleQuantizer.BITS_16);
+        assertEquals(SampleQuantizer.DEFAULT_MAXIMUM_RANGE / Short.MAX_VALUE, quantizer.step(), 0f);
+        assertEquals(SampleQuantizer.DEFAULT_MAXIMUM_RANGE, quantizer.maxValue(), 1e-3f);
+    }
+
+    @Test
+    public void testRoundTripWithinErrorBound() {
+        for (final int bits : new int[] {SampleQuantizer.BITS_8, SampleQuantizer.BITS_16}) {
+            final SampleQuantizer quantizer = new SampleQuantizer(bits, 0.05f);
+            final float[] values = {0f, 1.234f, -5.678f, quantizer.maxValue(), -quantizer.maxValue()};
+            final QuantizedSample sample = quantizer.quantize(new SensorSample(Sensor.TYPE_GYROSCOPE, 7L, 3, values));
+            assertEquals(bits, sample.bits());
+            assertEquals(values.length, sample.size());
+            final SensorSample restored = sample.toSensorSample();
+            assertEquals(7L, restored.timestamp());
+            assertEquals(3, restored.accuracy());
+            for (int i = 0; i < values.length; ++i) {
+                assertEquals(values[i], restored.values()[i], quantizer.maxError() + 1e-6f);
+            }
+        }
+    }
+
+    @Test
+    public void testSaturatesOutOfRange() {
+        final SampleQuantizer quantizer = new SampleQuantizer(SampleQuantizer.BITS_8, 1f);
+        assertEquals(Byte.MAX_VALUE, quantizer.quantize(1000f));
+        assertEquals(-Byte.MAX_VALUE, quantizer.quantize(-1000f));
+    }
+
+    @Test
+    public void testEncoderDerivesQuantizerPerSensor() throws Exception {
+        final SensorEvent light = sensorEvent(Sensor.TYPE_LIGHT, 1L, 12.4f);
+        when(light.sensor.getMaximumRange()).thenReturn(1000f);
+        when(light.sensor.getResolution()).thenReturn(1f);
+        final SensorEvent pressure = sensorEvent(Sensor.TYPE_PRESSURE, 2L, 1013.25f);
+        when(pressure.sensor.getMaximumRange()).thenReturn(1100f);
+        when(pressure.sensor.getResolution()).thenReturn(0.01f);
+        final List<SensorSample> samples = Flowable.just(light, pressure)
+                .compose(SampleQuantizer.encoder(SampleQuantizer.BITS_16))
+                .compose(SampleQuantizer.decoder())
+                .toList()
+                .blockingGet();
+        assertEquals(12f, samples.get(0).values()[0], 0f);
+        assertEquals(1013.25f, samples.get(1).values()[0], 1100f / Short.MAX_VALUE / 2);
+    }
+
+    @Test
+    public void testBatchesPackWindowsPerSensorType() throws Exception {
+        final SampleQuantizer quantizer = new SampleQuantizer(SampleQuantizer.BITS_16, 0.01f);
+        final List<QuantizedBatch> batches = Flowable.just(
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, 1L, 0.5f, -1f, 9.81f),
+                sensorEvent(Sensor.TYPE_GYROSCOPE, 2L, 0.1f, 0.2f, 0.3f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, 3L, 0.25f, -2f, 9.8f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, 5L, 1f, 2f, 3f)
+        ).compose(quantizer.batches(2)).toList().blockingGet();
+        assertEquals(3, batches.size());
+        final QuantizedBatch full = batches.get(0);
+        assertEquals(Sensor.TYPE_ACCELEROMETER, full.type());
+        assertEquals(SampleQuantizer.BITS_16, full.bits());
+        assertEquals(0.01f, full.step(), 0f);
+        assertEquals(3, full.axes());
+        assertEquals(2, full.size());
+        assertEquals(3L, full.timestamp(1));
+        assertEquals(-200, full.code(1, 1));
+        assertEquals(9.81f, full.value(0, 2), quantizer.maxError() + 1e-6f);
+        assertEquals(Sensor.TYPE_ACCELEROMETER, batches.get(1).type());
+        assertEquals(1, batches.get(1).size());
+        assertEquals(5L, batches.get(1).timestamp(0));
+        assertEquals(Sensor.TYPE_GYROSCOPE, batches.get(2).type());
+        assertEquals(1, batches.get(2).size());
+    }
+
+    @Test
+    public void testBatchesRoundTripWithinErrorBound() throws Exception {
+        final SensorEvent first = sensorEvent(Sensor.TYPE_PRESSURE, 1L, 1013.25f);
+        final SensorEvent second = sensorEvent(Sensor.TYPE_PRESSURE, 2L, -2000f);
+        when(first.sensor.getMaximumRange()).thenReturn(1100f);
+        when(second.sensor.getMaximumRange()).thenReturn(1100f);
+        final List<SensorSample> samples = Flowable.just(first, second)
+                .compose(SampleQuantizer.batches(SampleQuantizer.BITS_8, 8))
+                .compose(SampleQuantizer.batchDecoder())
+                .toList()
+                .blockingGet();
+        assertEquals(2, samples.size());
+        assertEquals(1013.25f, samples.get(0).values()[0], 1100f / Byte.MAX_VALUE / 2);
+        assertEquals(2L, samples.get(1).timestamp());
+        assertEquals(-1100f, samples.get(1).values()[0], 1e-3f);
+    }
+
+    private static Sensor sensor(final int type, final float maximumRange, final float resolution) {
+        final Sensor sensor = mock(Sensor.class);
+        when(sensor.getType()).thenReturn(type);
+        when(sensor.getMaximumRange()).thenReturn(maximumRange);
+        when(sensor.getResolution()).thenReturn(resolution);
+        return sensor;
+    }
+}
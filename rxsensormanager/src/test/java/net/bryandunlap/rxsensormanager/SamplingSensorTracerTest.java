@@ -0,0 +1,127 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import io.reactivex.subscribers.TestSubscriber;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.List;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SamplingSensorTracerTest {
+    @Test
+    public void testSamplesSections() {
+        final SamplingSensorTracer tracer = new SamplingSensorTracer(2, 8);
+        for (int i = 0; i < 5; ++i) {
+            final long token = tracer.beginSection(SensorTracer.ON_SENSOR_CHANGED, Sensor.TYPE_LIGHT);
+            if (token != SensorTracer.NOT_TRACED) {
+                tracer.endSection(SensorTracer.ON_SENSOR_CHANGED, Sensor.TYPE_LIGHT, token);
+            }
+        }
+        final List<SamplingSensorTracer.Section> sections = tracer.sections();
+        assertEquals(3, sections.size());
+        assertEquals(SensorTracer.ON_SENSOR_CHANGED, sections.get(0).point());
+        assertTrue(sections.get(0).durationNanos() >= 0);
+    }
+
+    @Test
+    public void testRingKeepsNewestSections() {
+        final SamplingSensorTracer tracer = new SamplingSensorTracer(1, 2);
+        for (int type = 1; type <= 3; ++type) {
+            tracer.endSection(
+                    SensorTracer.GET_DEFAULT_SENSOR,
+                    type,
+                    tracer.beginSection(SensorTracer.GET_DEFAULT_SENSOR, type)
+            );
+        }
+        final List<SamplingSensorTracer.Section> sections = tracer.sections();
+        assertEquals(2, sections.size());
+        assertEquals(2, sections.get(0).sensorType());
+        assertEquals(3, sections.get(1).sensorType());
+    }
+
+    @Test
+    public void testTracesRxSensorManager() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final SensorManager mockSensorManager = mock(SensorManager.class);
+        final Sensor mockSensor = mock(Sensor.class);
+        when(mockSensor.getType()).thenReturn(Sensor.TYPE_LIGHT);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT)).thenReturn(mockSensor);
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(argumentCaptor.capture(), eq(mockSensor), eq(0))).thenReturn(true);
+        final SamplingSensorTracer tracer = new SamplingSensorTracer(1, 16);
+
+        final TestSubscriber<SensorEvent> testSubscriber = new RxSensorManager(mockSensorManager, tracer)
+                .observeSensor(Sensor.TYPE_LIGHT, 0)
+                .test();
+        for (int i = 0; i < 3; ++i) {
+            argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_LIGHT, i, 1f));
+        }
+        testSubscriber.assertValueCount(3).cancel();
+
+        final List<SamplingSensorTracer.Section> sections = tracer.sections();
+        assertEquals(SensorTracer.GET_DEFAULT_SENSOR, sections.get(0).point());
+        assertEquals(SensorTracer.REGISTER_LISTENER, sections.get(1).point());
+        assertEquals(SensorTracer.ON_SENSOR_CHANGED, sections.get(2).point());
+        assertEquals(SensorTracer.UNREGISTER_LISTENER, sections.get(5).point());
+        assertEquals(6, sections.size());
+        assertEquals(3L, tracer.counter(SensorTracer.ON_SENSOR_CHANGED, Sensor.TYPE_LIGHT));
+    }
+
+    @Test
+    public void testCountsMultiplexedEventsUnderUnknownType() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final SensorManager mockSensorManager = mock(SensorManager.class);
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_LIGHT)).thenReturn(mock(Sensor.class));
+        when(mockSensorManager.getDefaultSensor(Sensor.TYPE_PRESSURE)).thenReturn(mock(Sensor.class));
+        final ArgumentCaptor<SensorEventListener> argumentCaptor = ArgumentCaptor.forClass(SensorEventListener.class);
+        when(mockSensorManager.registerListener(argumentCaptor.capture(), any(Sensor.class), eq(0))).thenReturn(true);
+        final SamplingSensorTracer tracer = new SamplingSensorTracer(1, 16);
+
+        new RxSensorManager(mockSensorManager, tracer)
+                .observeAll(new int[] {Sensor.TYPE_LIGHT, Sensor.TYPE_PRESSURE}, 0, 0)
+                .test();
+        argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_LIGHT, 0L, 1f));
+        argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_PRESSURE, 1L, 1f));
+        argumentCaptor.getValue().onSensorChanged(sensorEvent(Sensor.TYPE_LIGHT, 2L, 1f));
+
+        assertEquals(3L, tracer.counter(SensorTracer.ON_SENSOR_CHANGED, -1));
+        assertEquals(0L, tracer.counter(SensorTracer.ON_SENSOR_CHANGED, Sensor.TYPE_LIGHT));
+        assertEquals(0L, tracer.counter(SensorTracer.ON_SENSOR_CHANGED, Sensor.TYPE_PRESSURE));
+    }
+
+    private static void setFinalStatic(final Field field, final Object newValue) throws Exception {
+        field.setAccessible(true);
+        final Field modifiersField = Field.class.getDeclaredField("modifiers");
+        modifiersField.setAccessible(true);
+        modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+        field.set(null, newValue);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class SensorEventExporterTest {
+    @Test
+    public void testExportToLocalSocket() throws Exception {
+        final ServerSocketChannel server = ServerSocketChannel.open();
+        server.socket().bind(new InetSocketAddress("127.0.0.1", 0));
+        final SocketChannel client = SocketChannel.open(server.socket().getLocalSocketAddress());
+        final SocketChannel accepted = server.accept();
+        try {
+            final SensorEvent[] events = new SensorEvent[] {
+                    sensorEvent(Sensor.TYPE_ACCELEROMETER, 1000L, 1f, 2f, 3f),
+                    sensorEvent(Sensor.TYPE_GYROSCOPE, 1500L, 4f, 5f, 6f),
+                    sensorEvent(Sensor.TYPE_ACCELEROMETER, 2000L, 7f, 8f, 9f),
+            };
+            new SensorEventExporter(client, 2, 0f)
+                    .export(Flowable.fromArray(events), Schedulers.single())
+                    .blockingAwait();
+            client.close();
+
+            final ByteArrayOutputStream received = new ByteArrayOutputStream();
+            final ByteBuffer chunk = ByteBuffer.allocate(256);
+            while (accepted.read(chunk) >= 0) {
+                received.write(chunk.array(), 0, chunk.position());
+                chunk.clear();
+            }
+            final List<Object[]> samples = decode(ByteBuffer.wrap(received.toByteArray()), 0f);
+            assertEquals(3, samples.size());
+            assertSample(samples.get(0), Sensor.TYPE_ACCELEROMETER, 1000L, 1f, 2f, 3f);
+            assertSample(samples.get(1), Sensor.TYPE_GYROSCOPE, 1500L, 4f, 5f, 6f);
+            assertSample(samples.get(2), Sensor.TYPE_ACCELEROMETER, 2000L, 7f, 8f, 9f);
+        } finally {
+            accepted.close();
+            server.close();
+        }
+    }
+
+    @Test
+    public void testExportQuantized() throws Exception {
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        new SensorEventExporter(outputStream, 8, 0.01f)
+                .export(Flowable.just(sensorEvent(Sensor.TYPE_LIGHT, 42L, 123.456f)), Schedulers.trampoline())
+                .blockingAwait();
+        final List<Object[]> samples = decode(ByteBuffer.wrap(outputStream.toByteArray()), 0.01f);
+        assertEquals(1, samples.size());
+        assertEquals(Sensor.TYPE_LIGHT, samples.get(0)[0]);
+        assertEquals(123.46f, ((float[]) samples.get(0)[2])[0], 0.005f);
+    }
+
+    @Test
+    public void testExportOnErrorIOException() throws Exception {
+        final OutputStream failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("closed");
+            }
+        };
+        new SensorEventExporter(failing, 1, 0f)
+                .export(Flowable.just(sensorEvent(Sensor.TYPE_LIGHT, 0L, 1f)), Schedulers.trampoline())
+                .test()
+                .assertError(IOException.class);
+    }
+
+    private static void assertSample(
+            final Object[] sample,
+            final int type,
+            final long timestamp,
+            final float... values
+    ) {
+        assertEquals(type, sample[0]);
+        assertEquals(timestamp, sample[1]);
+        assertArrayEquals(values, (float[]) sample[2], 0f);
+    }
+
+    private static List<Object[]> decode(final ByteBuffer buffer, final float step) {
+        assertEquals(SensorEventExporter.MAGIC, buffer.getInt());
+        assertEquals(SensorEventExporter.VERSION, buffer.get());
+        assertEquals(step, buffer.getFloat(), 0f);
+        final List<Integer> types = new ArrayList<Integer>();
+        final List<Long> timestamps = new ArrayList<Long>();
+        final List<Object[]> samples = new ArrayList<Object[]>();
+        while (buffer.hasRemaining()) {
+            final int end = buffer.getInt() + buffer.position();
+            while (buffer.position() < end) {
+                final int tag = buffer.get();
+                final int id = (int) VarInts.getUnsigned(buffer);
+                if (tag == SensorEventExporter.RECORD_DEFINE) {
+                    types.add((int) VarInts.getSigned(buffer));
+                    timestamps.add(0L);
+                    continue;
+                }
+                final long timestamp = timestamps.get(id) + VarInts.getSigned(buffer);
+                timestamps.set(id, timestamp);
+                buffer.get();
+                final float[] values = new float[(int) VarInts.getUnsigned(buffer)];
+                for (int i = 0; i < values.length; ++i) {
+                    values[i] = step > 0 ? VarInts.getSigned(buffer) * step : buffer.getFloat();
+                }
+                samples.add(new Object[] {types.get(id), timestamp, values});
+            }
+        }
+        return samples;
+    }
+}
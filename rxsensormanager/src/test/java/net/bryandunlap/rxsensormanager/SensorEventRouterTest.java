@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.functions.Consumer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertEquals;
+
+public class SensorEventRouterTest {
+    @Test
+    public void testTypeTable() {
+        final int[] types = new int[] {1, 4, 2, 9, 4, 35, 65536, -1};
+        final SensorTypeTable table = new SensorTypeTable(types);
+        assertEquals(7, table.size());
+        assertEquals(0, table.indexOf(1));
+        assertEquals(1, table.indexOf(4));
+        assertEquals(2, table.indexOf(2));
+        assertEquals(5, table.indexOf(65536));
+        assertEquals(6, table.indexOf(-1));
+        assertEquals(-1, table.indexOf(3));
+    }
+
+    @Test
+    public void testRoute() throws Exception {
+        final List<Long> accelerometer = new ArrayList<Long>();
+        final List<Long> gyroscope = new ArrayList<Long>();
+        final SensorEventRouter router = new SensorEventRouter(new int[] {
+                Sensor.TYPE_ACCELEROMETER,
+                Sensor.TYPE_GYROSCOPE,
+                Sensor.TYPE_LIGHT,
+        })
+                .route(Sensor.TYPE_ACCELEROMETER, collect(accelerometer))
+                .route(Sensor.TYPE_GYROSCOPE, collect(gyroscope));
+        router.accept(sensorEvent(Sensor.TYPE_ACCELEROMETER, 1L, 0f));
+        router.accept(sensorEvent(Sensor.TYPE_GYROSCOPE, 2L, 0f));
+        router.accept(sensorEvent(Sensor.TYPE_LIGHT, 3L, 0f));
+        router.accept(sensorEvent(Sensor.TYPE_PRESSURE, 4L, 0f));
+        router.accept(sensorEvent(Sensor.TYPE_ACCELEROMETER, 5L, 0f));
+        assertEquals(2, accelerometer.size());
+        assertEquals(Long.valueOf(5L), accelerometer.get(1));
+        assertEquals(1, gyroscope.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRouteUnknownType() {
+        new SensorEventRouter(new int[] {Sensor.TYPE_ACCELEROMETER}).route(
+                Sensor.TYPE_GYROSCOPE,
+                collect(new ArrayList<Long>())
+        );
+    }
+
+    private static Consumer<SensorEvent> collect(final List<Long> timestamps) {
+        return new Consumer<SensorEvent>() {
+            @Override
+            public void accept(final SensorEvent sensorEvent) {
+                timestamps.add(sensorEvent.timestamp);
+            }
+        };
+    }
+}
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.schedulers.Schedulers;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SensorSessionReaderTest {
+    private static final int EVENT_COUNT = 100;
+
+    private File recording;
+    private RandomAccessFile file;
+
+    @Before
+    public void before() throws Exception {
+        // The gyroscope lags the accelerometer like a batched sensor flushed late.
+        final SensorEvent[] events = new SensorEvent[EVENT_COUNT];
+        for (int i = 0; i < EVENT_COUNT; ++i) {
+            events[i] = i % 2 == 0
+                    ? sensorEvent(Sensor.TYPE_ACCELEROMETER, i * 1000L, i, 0f, 9.8f)
+                    : sensorEvent(Sensor.TYPE_GYROSCOPE, (i - 5) * 1000L, -i);
+        }
+        recording = File.createTempFile("session", ".rxsm");
+        final FileOutputStream outputStream = new FileOutputStream(recording);
+        try {
+            new SensorEventExporter(outputStream, 4, 0f)
+                    .export(Flowable.fromArray(events), Schedulers.trampoline())
+                    .blockingAwait();
+        } finally {
+            outputStream.close();
+        }
+        file = new RandomAccessFile(recording, "r");
+    }
+
+    @After
+    public void after() throws Exception {
+        file.close();
+        assertTrue(recording.delete());
+    }
+
+    @Test
+    public void testReadRange() throws Exception {
+        final SensorSessionIndex index = SensorSessionIndex.build(file.getChannel(), 8, Long.MAX_VALUE);
+        assertEquals(13, index.size());
+        assertTrue(index.firstEntry(40000L) > 0);
+        assertTrue(index.endEntry(60000L) < index.size());
+
+        final List<SensorSample> samples = new SensorSessionReader(file.getChannel(), index)
+                .read(40000L, 60000L)
+                .toList()
+                .blockingGet();
+        final List<Long> expected = new ArrayList<Long>();
+        for (int i = 0; i < EVENT_COUNT; ++i) {
+            final long timestamp = i % 2 == 0 ? i * 1000L : (i - 5) * 1000L;
+            if (timestamp >= 40000L && timestamp <= 60000L) {
+                expected.add(timestamp);
+            }
+        }
+        final List<Long> actual = new ArrayList<Long>();
+        for (final SensorSample sample : samples) {
+            actual.add(sample.timestamp());
+        }
+        assertEquals(expected, actual);
+        assertEquals(Sensor.TYPE_ACCELEROMETER, samples.get(0).type());
+        assertArrayEquals(new float[] {40f, 0f, 9.8f}, samples.get(0).values(), 0f);
+        assertEquals(Sensor.TYPE_GYROSCOPE, samples.get(3).type());
+        assertArrayEquals(new float[] {-45f}, samples.get(3).values(), 0f);
+    }
+
+    @Test
+    public void testIndexByIntervalOnly() throws Exception {
+        final SensorSessionIndex index = SensorSessionIndex.build(file.getChannel(), Integer.MAX_VALUE, 10000L);
+        assertEquals(9, index.size());
+        assertTrue(index.firstEntry(40000L) > 0);
+        assertTrue(index.endEntry(60000L) < index.size());
+        new SensorSessionReader(file.getChannel(), index)
+                .read(40000L, 60000L)
+                .test()
+                .assertValueCount(22)
+                .assertComplete();
+    }
+
+    @Test
+    public void testIndexRoundTrip() throws Exception {
+        final SensorSessionIndex built = SensorSessionIndex.build(file.getChannel(), 1, 10000L);
+        final ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        built.writeTo(outputStream);
+        final SensorSessionIndex index =
+                SensorSessionIndex.readFrom(new ByteArrayInputStream(outputStream.toByteArray()));
+        assertEquals(built.size(), index.size());
+        new SensorSessionReader(file.getChannel(), index)
+                .read(Long.MIN_VALUE, Long.MAX_VALUE)
+                .test()
+                .assertValueCount(EVENT_COUNT)
+                .assertComplete();
+    }
+
+    @Test
+    public void testReadEmptyRange() throws Exception {
+        final SensorSessionIndex index = SensorSessionIndex.build(file.getChannel(), 8, Long.MAX_VALUE);
+        new SensorSessionReader(file.getChannel(), index)
+                .read(1000000L, 2000000L)
+                .test()
+                .assertNoValues()
+                .assertComplete();
+    }
+
+    @Test
+    public void testIndexIgnoresPartialFrame() throws Exception {
+        final RandomAccessFile truncated = new RandomAccessFile(recording, "rw");
+        try {
+            truncated.setLength(recording.length() - 3);
+            final SensorSessionIndex index = SensorSessionIndex.build(truncated.getChannel(), 8, Long.MAX_VALUE);
+            new SensorSessionReader(truncated.getChannel(), index)
+                    .read(Long.MIN_VALUE, Long.MAX_VALUE)
+                    .test()
+                    .assertValueCount(EVENT_COUNT - 4)
+                    .assertComplete();
+        } finally {
+            truncated.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.FlowableTransformer;
+import io.reactivex.functions.Function;
+import io.reactivex.schedulers.Schedulers;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertEquals;
+
+public class ShardedFeatureExtractorTest {
+    private static final int[] TYPES = {Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_GYROSCOPE, Sensor.TYPE_LIGHT};
+    private static final int EVENTS_PER_TYPE = 200;
+
+    @Test
+    public void testPreservesPerSensorOrderAndThread() throws Exception {
+        final List<SensorEvent> events = new ArrayList<SensorEvent>();
+        for (int i = 0; i < EVENTS_PER_TYPE; ++i) {
+            for (final int type : TYPES) {
+                events.add(sensorEvent(type, i, i));
+            }
+        }
+        final ShardedFeatureExtractor.PipelineFactory<String[]> factory =
+                new ShardedFeatureExtractor.PipelineFactory<String[]>() {
+                    @Override
+                    public FlowableTransformer<SensorSample, String[]> newPipeline(final int sensorType) {
+                        return new FlowableTransformer<SensorSample, String[]>() {
+                            @Override
+                            public Publisher<String[]> apply(final Flowable<SensorSample> samples) {
+                                return samples.map(new Function<SensorSample, String[]>() {
+                                    @Override
+                                    public String[] apply(final SensorSample sample) {
+                                        return new String[] {
+                                                String.valueOf(sensorType),
+                                                String.valueOf(sample.timestamp()),
+                                                Thread.currentThread().getName()
+                                        };
+                                    }
+                                });
+                            }
+                        };
+                    }
+                };
+        final List<String[]> features = Flowable.fromIterable(events)
+                .compose(new ShardedFeatureExtractor<String[]>(factory, Schedulers.computation(), 16))
+                .toList()
+                .blockingGet();
+
+        assertEquals(TYPES.length * EVENTS_PER_TYPE, features.size());
+        final Map<String, Long> lastTimestamps = new HashMap<String, Long>();
+        final Map<String, String> threads = new HashMap<String, String>();
+        for (final String[] feature : features) {
+            final long timestamp = Long.parseLong(feature[1]);
+            final Long previous = lastTimestamps.put(feature[0], timestamp);
+            assertEquals(previous == null ? 0L : previous + 1, timestamp);
+            final String thread = threads.put(feature[0], feature[2]);
+            assertEquals(thread == null ? feature[2] : thread, feature[2]);
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StepDetectorTest {
+    private static final long PERIOD_NS = 20000000L;
+    private static final float GRAVITY = 9.81f;
+
+    @Test
+    public void testDetectsWalking() {
+        final StepDetector detector = new StepDetector();
+        int steps = 0;
+        for (int i = 0; i < 500; ++i) {
+            final double t = i * PERIOD_NS / 1e9;
+            final float bounce = (float) (3 * Math.sin(2 * Math.PI * 2 * t));
+            if (detector.update(i * PERIOD_NS, 0.5f, 0.2f, GRAVITY + bounce)) {
+                ++steps;
+            }
+        }
+        assertEquals(20, steps, 1);
+    }
+
+    @Test
+    public void testIgnoresNoise() {
+        final StepDetector detector = new StepDetector();
+        final Random random = new Random(7);
+        int steps = 0;
+        for (int i = 0; i < 500; ++i) {
+            final float noise = (random.nextFloat() - 0.5f) * 0.6f;
+            if (detector.update(i * PERIOD_NS, noise, -noise, GRAVITY + noise)) {
+                ++steps;
+            }
+        }
+        assertEquals(0, steps);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class StepTrackerTest {
+    private static final long SECOND_NS = 1000000000L;
+
+    @Test
+    public void testBaselineAndCounterRestart() {
+        final StepTracker tracker = new StepTracker(10 * SECOND_NS, false);
+        assertNull(tracker.onTotal(0L, 5000L));
+        assertNull(tracker.onTotal(SECOND_NS, 5000L));
+        assertEquals(4L, tracker.onTotal(2 * SECOND_NS, 5004L).steps());
+        assertEquals(7L, tracker.onTotal(3 * SECOND_NS, 3L).steps());
+    }
+
+    @Test
+    public void testWarmUpCadence() {
+        final StepTracker tracker = new StepTracker(10 * SECOND_NS, false);
+        assertNull(tracker.onTotal(0L, 5000L));
+        final StepReading reading = tracker.onTotal(SECOND_NS, 5003L);
+        assertEquals(180f, reading.cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_RUNNING, reading.activity());
+        assertEquals(100f, tracker.onTotal(3 * SECOND_NS, 5005L).cadence(), 1e-3f);
+    }
+
+    @Test
+    public void testWarmUpCadenceSpanFloor() {
+        final StepTracker tracker = new StepTracker(10 * SECOND_NS, true);
+        tracker.begin(0L);
+        assertEquals(60f, tracker.onStep(SECOND_NS / 10).cadence(), 1e-3f);
+    }
+
+    @Test
+    public void testCadenceWindow() {
+        final StepTracker tracker = new StepTracker(10 * SECOND_NS, true);
+        StepReading reading = null;
+        for (int i = 0; i < 40; ++i) {
+            reading = tracker.onStep(i * SECOND_NS / 2);
+        }
+        assertEquals(40L, reading.steps());
+        assertEquals(120f, reading.cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_WALKING, reading.activity());
+        reading = tracker.onStep(40 * SECOND_NS);
+        assertEquals(6f, reading.cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_STILL, reading.activity());
+    }
+
+    @Test
+    public void testCadenceAboveRingCapacity() {
+        final StepTracker tracker = new StepTracker(SECOND_NS, true);
+        StepReading reading = null;
+        for (int i = 0; i < 100; ++i) {
+            reading = tracker.onStep(i * SECOND_NS / 10);
+        }
+        assertEquals(100L, reading.steps());
+        assertEquals((StepTracker.MAX_STEPS_PER_SECOND + 1) * 60f, reading.cadence(), 1e-3f);
+        assertEquals(StepReading.ACTIVITY_RUNNING, reading.activity());
+    }
+}
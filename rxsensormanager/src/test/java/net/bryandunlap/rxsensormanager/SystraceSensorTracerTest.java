@@ -0,0 +1,44 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.os.Build;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class SystraceSensorTracerTest {
+    @Test
+    public void testNoOpBelowApi18() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 17);
+        final SystraceSensorTracer tracer = new SystraceSensorTracer(1);
+        for (int point = 0; point < SensorTracer.POINT_COUNT; ++point) {
+            final long token = tracer.beginSection(point, 1);
+            assertEquals(SensorTracer.NOT_TRACED, token);
+            tracer.endSection(point, 1, token);
+        }
+    }
+
+    private static void setFinalStatic(final Field field, final Object newValue) throws Exception {
+        field.setAccessible(true);
+        final Field modifiersField = Field.class.getDeclaredField("modifiers");
+        modifiersField.setAccessible(true);
+        modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+        field.set(null, newValue);
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class TensorWindowerTest {
+    @Test
+    public void testOverlappingWindowsWithHeldChannels() throws Exception {
+        final List<SensorEvent> events = new ArrayList<SensorEvent>();
+        events.add(sensorEvent(Sensor.TYPE_LIGHT, 0L, 100f));
+        for (int i = 0; i < 6; ++i) {
+            events.add(sensorEvent(Sensor.TYPE_ACCELEROMETER, i, i, 10 + i, 20 + i));
+            if (i == 2) {
+                events.add(sensorEvent(Sensor.TYPE_LIGHT, i, 200f));
+            }
+        }
+        final TensorWindower windower = new TensorWindower(
+                4,
+                2,
+                new int[] {Sensor.TYPE_ACCELEROMETER, Sensor.TYPE_LIGHT},
+                new int[] {3, 1},
+                1
+        );
+        assertEquals(4, windower.channels());
+        final List<float[]> tensors = Flowable.fromIterable(events)
+                .compose(windower)
+                .map(new Function<FloatBuffer, float[]>() {
+                    @Override
+                    public float[] apply(final FloatBuffer tensor) {
+                        assertTrue(tensor.isDirect());
+                        final float[] copy = new float[tensor.remaining()];
+                        tensor.get(copy);
+                        return copy;
+                    }
+                })
+                .toList()
+                .blockingGet();
+        assertEquals(2, tensors.size());
+        assertArrayEquals(new float[] {
+                0, 10, 20, 100,
+                1, 11, 21, 100,
+                2, 12, 22, 100,
+                3, 13, 23, 200,
+        }, tensors.get(0), 0f);
+        assertArrayEquals(new float[] {
+                2, 12, 22, 100,
+                3, 13, 23, 200,
+                4, 14, 24, 200,
+                5, 15, 25, 200,
+        }, tensors.get(1), 0f);
+    }
+
+    @Test
+    public void testNormalizationAndBufferRotation() throws Exception {
+        final List<SensorEvent> events = new ArrayList<SensorEvent>();
+        for (int i = 0; i < 8; ++i) {
+            events.add(sensorEvent(Sensor.TYPE_PRESSURE, i, 1000f + i));
+        }
+        final TensorWindower windower = new TensorWindower(
+                2,
+                2,
+                new int[] {Sensor.TYPE_PRESSURE},
+                new int[] {1},
+                1,
+                new float[] {1000f},
+                new float[] {0.5f}
+        );
+        final List<FloatBuffer> tensors = Flowable.fromIterable(events)
+                .compose(windower)
+                .toList()
+                .blockingGet();
+        assertEquals(4, tensors.size());
+        // One active window plus one spare buffer.
+        assertTrue(tensors.get(0) == tensors.get(2));
+        assertTrue(tensors.get(1) == tensors.get(3));
+        assertEquals(3f, tensors.get(3).get(0), 0f);
+        assertEquals(3.5f, tensors.get(3).get(1), 0f);
+    }
+}
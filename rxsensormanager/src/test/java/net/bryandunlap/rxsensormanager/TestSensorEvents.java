@@ -0,0 +1,41 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import java.lang.reflect.Field;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+final class TestSensorEvents {
+    private TestSensorEvents() {
+        // no instances
+    }
+
+    static SensorEvent sensorEvent(final int type, final long timestamp, final float... values) throws Exception {
+        final Sensor sensor = mock(Sensor.class);
+        when(sensor.getType()).thenReturn(type);
+        final SensorEvent sensorEvent = mock(SensorEvent.class);
+        final Field valuesField = SensorEvent.class.getField("values");
+        valuesField.setAccessible(true);
+        valuesField.set(sensorEvent, values);
+        sensorEvent.sensor = sensor;
+        sensorEvent.timestamp = timestamp;
+        return sensorEvent;
+    }
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+import io.reactivex.Flowable;
+import io.reactivex.functions.Function;
+import java.util.Arrays;
+import org.junit.Test;
+
+import static net.bryandunlap.rxsensormanager.TestSensorEvents.sensorEvent;
+import static org.junit.Assert.assertEquals;
+
+public class TimestampNormalizerTest {
+    private static final long SECOND = 1000000000L;
+    private static final long MILLISECOND = 1000000L;
+    private static final long BASE = 99 * SECOND;
+
+    private final ManualClocks clocks = new ManualClocks(100 * SECOND, 95 * SECOND, 1500000000L * SECOND);
+
+    @Test
+    public void testElapsedRealtimeBase() {
+        final TimestampNormalizer.Normalization normalization = normalization(TimestampNormalizer.REPAIR);
+        assertEquals(99 * SECOND, normalization.normalize(Sensor.TYPE_ACCELEROMETER, 99 * SECOND));
+        assertEquals(TimestampNormalizer.BASE_ELAPSED_REALTIME, normalization.baseOf(Sensor.TYPE_ACCELEROMETER));
+    }
+
+    @Test
+    public void testElapsedRealtimeBaseWithHighLatencyShortlyAfterBoot() {
+        // Suspended for 2 s since boot; the first batched sample is flushed 1.5 s late.
+        final TimestampNormalizer.Normalization normalization = new TimestampNormalizer(
+                TimestampNormalizer.REPAIR,
+                100f,
+                new ManualClocks(100 * SECOND, 98 * SECOND, 1500000000L * SECOND)
+        ).new Normalization();
+        assertEquals(98500 * MILLISECOND, normalization.normalize(Sensor.TYPE_ACCELEROMETER, 98500 * MILLISECOND));
+        assertEquals(TimestampNormalizer.BASE_ELAPSED_REALTIME, normalization.baseOf(Sensor.TYPE_ACCELEROMETER));
+    }
+
+    @Test
+    public void testMonotonicBase() {
+        // Suspended for longer than the detection tolerance, so the timestamp cannot be elapsed realtime.
+        final TimestampNormalizer.Normalization normalization = new TimestampNormalizer(
+                TimestampNormalizer.REPAIR,
+                100f,
+                new ManualClocks(200 * SECOND, 95 * SECOND, 1500000000L * SECOND)
+        ).new Normalization();
+        assertEquals(199 * SECOND, normalization.normalize(Sensor.TYPE_ACCELEROMETER, 94 * SECOND));
+        assertEquals(TimestampNormalizer.BASE_MONOTONIC, normalization.baseOf(Sensor.TYPE_ACCELEROMETER));
+    }
+
+    @Test
+    public void testWallClockBase() {
+        final TimestampNormalizer.Normalization normalization = normalization(TimestampNormalizer.REPAIR);
+        assertEquals(99 * SECOND, normalization.normalize(Sensor.TYPE_LIGHT, clocks.wallClock - SECOND));
+        assertEquals(TimestampNormalizer.BASE_WALL_CLOCK, normalization.baseOf(Sensor.TYPE_LIGHT));
+        final TimestampNormalizer normalizer = new TimestampNormalizer(TimestampNormalizer.REPAIR, 0f, clocks);
+        assertEquals(clocks.wallClock - SECOND, normalizer.toWallClockNanos(99 * SECOND));
+    }
+
+    @Test
+    public void testUnknownBaseTracksLowerEnvelope() {
+        final TimestampNormalizer.Normalization normalization = normalization(TimestampNormalizer.REPAIR);
+        // A sensor clock starting at zero, delivered 5 ms late.
+        assertEquals(100 * SECOND, normalization.normalize(Sensor.TYPE_PRESSURE, 0L));
+        assertEquals(TimestampNormalizer.BASE_UNKNOWN, normalization.baseOf(Sensor.TYPE_PRESSURE));
+        clocks.advance(SECOND + 5 * MILLISECOND);
+        // Extra latency is only absorbed up to the allowed drift of 100 ppm over the elapsed 1.005 s.
+        assertEquals(101 * SECOND + 100500L, normalization.normalize(Sensor.TYPE_PRESSURE, SECOND));
+        clocks.advance(SECOND - 5 * MILLISECOND);
+        // An earlier delivery lowers the offset immediately.
+        assertEquals(102 * SECOND, normalization.normalize(Sensor.TYPE_PRESSURE, 2 * SECOND + MILLISECOND));
+    }
+
+    @Test
+    public void testBurstIsSpacedEvenly() {
+        final TimestampNormalizer.Normalization normalization = normalization(TimestampNormalizer.REPAIR);
+        final long[] input = new long[] {
+                BASE,
+                BASE + 10 * MILLISECOND,
+                BASE + 20 * MILLISECOND,
+                BASE + 30 * MILLISECOND,
+                BASE + 30 * MILLISECOND,
+                BASE + 31 * MILLISECOND,
+                BASE + 30 * MILLISECOND,
+                BASE + 70 * MILLISECOND,
+        };
+        final long[] output = new long[input.length];
+        for (int i = 0; i < input.length; ++i) {
+            output[i] = normalization.normalize(Sensor.TYPE_ACCELEROMETER, input[i]) - BASE;
+        }
+        assertEquals(
+                Arrays.toString(new long[] {0L, 10L, 20L, 30L, 40L, 50L, 60L, 70L}),
+                Arrays.toString(divide(output, MILLISECOND))
+        );
+    }
+
+    @Test
+    public void testDropDuplicatesAndOutOfOrder() throws Exception {
+        final Long[] timestamps = Flowable.just(
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, BASE, 0f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, BASE + 10 * MILLISECOND, 0f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, BASE + 10 * MILLISECOND, 0f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, BASE + 5 * MILLISECOND, 0f),
+                sensorEvent(Sensor.TYPE_ACCELEROMETER, BASE + 20 * MILLISECOND, 0f)
+        )
+                .compose(new TimestampNormalizer(TimestampNormalizer.DROP, 0f, clocks))
+                .map(new Function<SensorEvent, Long>() {
+                    @Override
+                    public Long apply(final SensorEvent sensorEvent) {
+                        return sensorEvent.timestamp - BASE;
+                    }
+                })
+                .toList()
+                .blockingGet()
+                .toArray(new Long[0]);
+        assertEquals(
+                Arrays.asList(0L, 10 * MILLISECOND, 20 * MILLISECOND),
+                Arrays.asList(timestamps)
+        );
+    }
+
+    private TimestampNormalizer.Normalization normalization(final int mode) {
+        return new TimestampNormalizer(mode, 100f, clocks).new Normalization();
+    }
+
+    private static long[] divide(final long[] values, final long divisor) {
+        final long[] result = new long[values.length];
+        for (int i = 0; i < values.length; ++i) {
+            result[i] = values[i] / divisor;
+        }
+        return result;
+    }
+
+    private static final class ManualClocks implements TimestampNormalizer.Clocks {
+        long elapsedRealtime;
+        long monotonic;
+        long wallClock;
+
+        ManualClocks(final long elapsedRealtime, final long monotonic, final long wallClock) {
+            this.elapsedRealtime = elapsedRealtime;
+            this.monotonic = monotonic;
+            this.wallClock = wallClock;
+        }
+
+        void advance(final long nanos) {
+            elapsedRealtime += nanos;
+            monotonic += nanos;
+            wallClock += nanos;
+        }
+
+        @Override
+        public long elapsedRealtimeNanos() {
+            return elapsedRealtime;
+        }
+
+        @Override
+        public long monotonicNanos() {
+            return monotonic;
+        }
+
+        @Override
+        public long wallClockNanos() {
+            return wallClock;
+        }
+    }
+}
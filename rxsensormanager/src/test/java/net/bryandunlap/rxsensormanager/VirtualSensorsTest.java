@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2016 Bryan Dunlap
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package net.bryandunlap.rxsensormanager;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VirtualSensorsTest {
+    private static final float EPSILON = 1e-5f;
+
+    @Test
+    public void testGravityLowPass() {
+        final VirtualSensors.Derivation derivation = new VirtualSensors.Derivation(Sensor.TYPE_GRAVITY);
+        derivation.apply(accelerometer(0L, 0f, 0f, 10f));
+        final SensorSample gravity =
+                derivation.apply(accelerometer(VirtualSensors.GRAVITY_TIME_CONSTANT_NS, 0f, 0f, 0f));
+        assertTrue(gravity.isVirtual());
+        assertEquals(Sensor.TYPE_GRAVITY, gravity.type());
+        assertArrayEquals(new float[] {0f, 0f, 5f}, gravity.values(), EPSILON);
+    }
+
+    @Test
+    public void testLinearAcceleration() {
+        final VirtualSensors.Derivation derivation = new VirtualSensors.Derivation(Sensor.TYPE_LINEAR_ACCELERATION);
+        derivation.apply(accelerometer(0L, 0f, 0f, 9.8f));
+        final SensorSample linearAcceleration = derivation.apply(accelerometer(1000L, 2f, 0f, 9.8f));
+        assertEquals(2f, linearAcceleration.values()[0], 1e-4f);
+        assertEquals(0f, linearAcceleration.values()[2], EPSILON);
+    }
+
+    @Test
+    public void testRotationVectorWaitsForMagnetometer() {
+        final VirtualSensors.Derivation derivation = new VirtualSensors.Derivation(Sensor.TYPE_ROTATION_VECTOR);
+        assertSame(VirtualSensors.Derivation.NOT_READY, derivation.apply(accelerometer(0L, 0f, 0f, 9.8f)));
+        assertSame(
+                VirtualSensors.Derivation.NOT_READY,
+                derivation.apply(new SensorSample(Sensor.TYPE_MAGNETIC_FIELD, 0L, 3, new float[] {0f, 20f, -40f}))
+        );
+        final SensorSample rotationVector = derivation.apply(accelerometer(1000L, 0f, 0f, 9.8f));
+        assertArrayEquals(new float[] {0f, 0f, 0f, 1f}, rotationVector.values(), EPSILON);
+    }
+
+    @Test
+    public void testRotationVectorFacingEast() {
+        final float[] r = new float[9];
+        assertTrue(VirtualSensors.rotationMatrix(new float[] {0f, 0f, 9.8f}, new float[] {-20f, 0f, -40f}, r));
+        final float halfSqrt2 = (float) Math.sqrt(0.5);
+        assertArrayEquals(new float[] {0f, 0f, -halfSqrt2, halfSqrt2}, VirtualSensors.rotationVector(r), EPSILON);
+    }
+
+    @Test
+    public void testRotationMatrixInFreeFall() {
+        assertFalse(VirtualSensors.rotationMatrix(new float[] {0f, 0f, 0f}, new float[] {0f, 20f, -40f}, new float[9]));
+    }
+
+    @Test
+    public void testRawSensorReleasesHandlerAfterUnregistering() throws Exception {
+        setFinalStatic(Build.VERSION.class.getField("SDK_INT"), 9);
+        final SensorManager sensorManager = mock(SensorManager.class);
+        final Sensor accelerometer = mock(Sensor.class);
+        when(accelerometer.getType()).thenReturn(Sensor.TYPE_ACCELEROMETER);
+        when(sensorManager.getDefaultSensor(Sensor.TYPE_ACCELEROMETER)).thenReturn(accelerometer);
+        final Handler handler = mock(Handler.class);
+        final HandlerLease handlerLease = mock(HandlerLease.class);
+        when(handlerLease.acquire()).thenReturn(handler);
+        when(sensorManager.registerListener(any(SensorEventListener.class), eq(accelerometer), eq(0), eq(handler)))
+                .thenReturn(true);
+        final VirtualSensors virtualSensors = new VirtualSensors(new RxSensorManager(sensorManager), handlerLease);
+        virtualSensors.observe(Sensor.TYPE_GRAVITY, 0).test().dispose();
+        final InOrder inOrder = inOrder(handlerLease, sensorManager);
+        inOrder.verify(handlerLease).acquire();
+        inOrder.verify(sensorManager).registerListener(
+                any(SensorEventListener.class),
+                eq(accelerometer),
+                eq(0),
+                eq(handler)
+        );
+        inOrder.verify(sensorManager).unregisterListener(any(SensorEventListener.class));
+        inOrder.verify(handlerLease).release();
+    }
+
+    private static SensorSample accelerometer(final long timestamp, final float... values) {
+        return new SensorSample(Sensor.TYPE_ACCELEROMETER, timestamp, 3, values);
+    }
+
+    private static void setFinalStatic(final Field field, final Object newValue) throws Exception {
+        field.setAccessible(true);
+        final Field modifiersField = Field.class.getDeclaredField("modifiers");
+        modifiersField.setAccessible(true);
+        modifiersField.setInt(field, field.getModifiers() & ~Modifier.FINAL);
+        field.set(null, newValue);
+    }
+}